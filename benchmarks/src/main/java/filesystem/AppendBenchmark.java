@@ -0,0 +1,42 @@
+package filesystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//append de chunk bytes no mesmo arquivo: APPENDS appends por medida, com um commit no fim; o tempo é por append
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class AppendBenchmark extends VolumeBenchmark {
+    private static final int APPENDS = 1000;
+
+    @Param({"16", "4096"})
+    public int chunk;
+
+    private String content;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, FileSystemException {
+        open();
+        content = "x".repeat(chunk);
+    }
+
+    @Setup(Level.Invocation)
+    public void clean() throws FileSystemException {
+        format();
+        fs.createArchive("root/log", "");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(APPENDS)
+    public void append() throws FileSystemException {
+        for (int i = 0; i < APPENDS; i++) {
+            fs.append("root/log.txt", content);
+        }
+        fs.commit();
+    }
+}
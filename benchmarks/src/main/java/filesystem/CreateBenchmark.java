@@ -0,0 +1,41 @@
+package filesystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//create de arquivos de size bytes: FILES arquivos por medida, com um commit no fim; o tempo é por arquivo
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CreateBenchmark extends VolumeBenchmark {
+    private static final int FILES = 16;
+
+    @Param({"100", "1024", "65536", "1048576"})
+    public int size;
+
+    private String content;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, FileSystemException {
+        open();
+        content = "x".repeat(size);
+    }
+
+    @Setup(Level.Invocation)
+    public void clean() throws FileSystemException {
+        format();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILES)
+    public void create() throws FileSystemException {
+        for (int i = 0; i < FILES; i++) {
+            fs.createArchive("root/f" + i, content);
+        }
+        fs.commit();
+    }
+}
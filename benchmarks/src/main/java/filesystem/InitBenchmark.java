@@ -0,0 +1,25 @@
+package filesystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//init: formatar o volume deve custar o tamanho dos metadados (superbloco, FAT, root e journal), e nao o do volume
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InitBenchmark extends VolumeBenchmark {
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, FileSystemException {
+        open();
+    }
+
+    @Benchmark
+    public void init() throws FileSystemException {
+        format();
+    }
+}
@@ -0,0 +1,34 @@
+package filesystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+//ls de um diretorio com entries arquivos, que ocupa varios blocos do diretorio
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LsBenchmark extends VolumeBenchmark {
+
+    @Param({"100", "1000"})
+    public int entries;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, FileSystemException {
+        open();
+        fs.mkdir("root/cheio");
+        for (int i = 0; i < entries; i++) {
+            fs.createArchive("root/cheio/f" + i, "");
+        }
+        fs.commit();
+    }
+
+    @Benchmark
+    public ArrayList<String> ls() throws FileSystemException {
+        return fs.ls("root/cheio");
+    }
+}
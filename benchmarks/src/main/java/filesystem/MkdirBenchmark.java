@@ -0,0 +1,37 @@
+package filesystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//mkdir em leque: fanout diretorios no mesmo pai, com um commit no fim, a partir de um volume recem formatado
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class MkdirBenchmark extends VolumeBenchmark {
+
+    @Param({"100", "1000"})
+    public int fanout;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, FileSystemException {
+        open();
+    }
+
+    @Setup(Level.Invocation)
+    public void clean() throws FileSystemException {
+        format();
+        fs.mkdir("root/pai");
+    }
+
+    @Benchmark
+    public void mkdir() throws FileSystemException {
+        for (int i = 0; i < fanout; i++) {
+            fs.mkdir("root/pai/d" + i);
+        }
+        fs.commit();
+    }
+}
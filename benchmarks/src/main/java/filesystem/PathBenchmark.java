@@ -0,0 +1,39 @@
+package filesystem;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+//resolucao de um caminho com depth diretorios ate um arquivo pequeno, lido inteiro a cada medida
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark extends VolumeBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int depth;
+
+    private String file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, FileSystemException {
+        open();
+        StringBuilder path = new StringBuilder("root");
+        for (int i = 0; i < depth; i++) {
+            path.append("/d").append(i);
+            fs.mkdir(path.toString());
+        }
+        fs.createArchive(path + "/f", "conteudo");
+        fs.commit();
+        file = path + "/f.txt";
+    }
+
+    @Benchmark
+    public void resolve() throws FileSystemException {
+        fs.readArchive(file, OutputStream.nullOutputStream());
+    }
+}
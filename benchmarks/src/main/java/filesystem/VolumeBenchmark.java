@@ -0,0 +1,55 @@
+package filesystem;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Level;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+//base dos benchmarks: um volume novo em um diretorio temporario, com a geometria dos parametros
+//(-p blockSize=... -p blocks=... na linha de comando); o diretorio é apagado no fim do trial
+@State(Scope.Thread)
+public abstract class VolumeBenchmark {
+    /* blocos no cache na frente do dispositivo, o mesmo padrao do shell */
+    private static final int CACHE_BLOCKS = 64;
+
+    @Param({"1024", "4096"})
+    public int blockSize;
+
+    @Param({"131072"})
+    public int blocks;
+
+    protected FileSystem fs;
+    private Path dir;
+
+    //cria o diretorio temporario e monta um volume formatado com a geometria dos parametros
+    protected void open() throws IOException, FileSystemException {
+        dir = Files.createTempDirectory("fs-bench");
+        String path = dir.resolve("filesystem.dat").toString();
+        FileSystem.DeviceFactory devices = volume -> new BlockCache(new FileChannelBlockDevice(path, volume.blockSize), CACHE_BLOCKS);
+        fs = new FileSystem(devices.open(Superblock.LEGACY), devices);
+        format();
+    }
+
+    //formata de novo o mesmo volume, para o proximo trecho medido comecar vazio
+    protected void format() throws FileSystemException {
+        fs.init(blockSize, blocks);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        if (fs != null) fs.close();
+        if (dir == null) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
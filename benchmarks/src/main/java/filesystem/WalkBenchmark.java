@@ -0,0 +1,47 @@
+package filesystem;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//du -s e find na raiz de uma arvore de fanout^3 diretorios com 4 arquivos em cada, com o cache ja aquecido
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalkBenchmark extends VolumeBenchmark {
+
+    @Param({"4", "8"})
+    public int fanout;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, FileSystemException {
+        open();
+        build("root", 3);
+        fs.commit();
+    }
+
+    private void build(String dir, int depth) throws FileSystemException {
+        for (int i = 0; i < 4; i++) {
+            fs.createArchive(dir + "/f" + i, "conteudo " + i);
+        }
+        if (depth == 0) return;
+        for (int i = 0; i < fanout; i++) {
+            fs.mkdir(dir + "/d" + i);
+            build(dir + "/d" + i, depth - 1);
+        }
+    }
+
+    @Benchmark
+    public long du() throws FileSystemException {
+        return fs.du("root", true, line -> {});
+    }
+
+    @Benchmark
+    public void find(Blackhole bh) throws FileSystemException {
+        fs.find("root", "f1*", 'f', bh::consume);
+    }
+}
@@ -0,0 +1,108 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//le o conteudo de um arquivo seguindo a cadeia da FAT a partir do first_block, ate o size da entrada
+//ao entrar em um bloco, os proximos blocos da cadeia sao pedidos ao dispositivo em segundo plano (readahead),
+//entao com o cache ligado a leitura sequencial encontra os blocos ja em memoria
+public class ArchiveInputStream extends InputStream {
+    /* uma unica thread de readahead para todo o sistema de arquivos */
+    private static final ExecutorService READAHEAD = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "readahead");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BlockDevice device;
+    private final Fat fat;
+    private final long size;
+    private final int readahead;
+    private final byte[] buffer;
+
+    /* quantidade de blocos que o size ocupa */
+    private final long blocks;
+
+    /* proximo bloco da cadeia a ir para o buffer e quantos ja foram */
+    private int next;
+    private long loaded;
+
+    /* proximo bloco da cadeia a ser pedido no readahead e sua posicao na cadeia */
+    private int ahead;
+    private long aheadPosition;
+
+    /* bytes do arquivo ja entregues e posicao dentro do buffer */
+    private long position;
+    private int offset;
+    private int limit;
+
+    public ArchiveInputStream(BlockDevice device, Fat fat, DirEntry entry, int readahead) {
+        this.device = device;
+        this.fat = fat;
+        this.size = Math.max(0, entry.size);
+        this.readahead = readahead;
+        this.buffer = new byte[device.blockSize()];
+        this.blocks = (size + buffer.length - 1) / buffer.length;
+        this.next = entry.first_block;
+        this.ahead = entry.first_block;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (position >= size) return -1;
+
+        if (offset == limit && !fill()) return -1;
+
+        int length = Math.min(len, limit - offset);
+        System.arraycopy(buffer, offset, b, off, length);
+        offset += length;
+        position += length;
+        return length;
+    }
+
+    @Override
+    public int available() {
+        return limit - offset;
+    }
+
+    //carrega o proximo bloco da cadeia no buffer; devolve false se a cadeia terminou antes do size
+    private boolean fill() throws IOException {
+        if (!isDataBlock(next)) return false;
+
+        int block = next;
+        next = fat.get(block);
+        loaded++;
+        prefetch();
+
+        device.readBlock(block, buffer);
+        offset = 0;
+        limit = (int) Math.min(buffer.length, size - position);
+        return true;
+    }
+
+    //pede ao dispositivo os proximos blocos da cadeia, mantendo ate readahead blocos a frente da leitura
+    private void prefetch() {
+        while (aheadPosition < loaded + readahead && aheadPosition < blocks && isDataBlock(ahead)) {
+            //blocos que a leitura ja alcancou nao precisam mais ser pedidos
+            if (aheadPosition >= loaded) {
+                final int block = ahead;
+                READAHEAD.execute(() -> device.prefetch(block));
+            }
+            ahead = fat.get(ahead);
+            aheadPosition++;
+        }
+    }
+
+    private boolean isDataBlock(int block) {
+        return block > 0 && block < fat.length() && block != Fat.FIM_DE_ARQUIVO && block != Fat.RESERVADO;
+    }
+}
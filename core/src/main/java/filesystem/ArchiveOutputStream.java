@@ -0,0 +1,173 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+//escreve o conteudo de um arquivo bloco a bloco, a partir do first_block da entrada
+//os blocos da cadeia antiga sao reaproveitados em ordem; quando ela acaba, blocos novos sao reservados em lotes
+//(de preferencia continuos) e encadeados so na FAT em memoria, que vai para o disco no proximo commit
+//no close o resto da cadeia antiga e liberado, o size e atualizado e a entrada de diretorio e gravada uma unica vez
+//no modo append a escrita comeca no fim do arquivo: so o ultimo bloco e lido e os blocos anteriores nao sao tocados
+public class ArchiveOutputStream extends OutputStream {
+    /* quantos blocos sao reservados de uma vez quando a cadeia precisa crescer */
+    private static final int ALLOCATION_BATCH = 8;
+
+    private final BlockDevice device;
+    private final Fat fat;
+    private final DirEntry entry;
+    private final Consumer<DirEntry> commit;
+    private final byte[] buffer;
+
+    /* bytes no buffer, ultimo bloco escrito na cadeia e total que ja esta nos blocos */
+    private int count;
+    private int block = -1;
+    private long stored;
+
+    /* blocos reservados no mapa de livres e ainda nao encadeados */
+    private int[] reserved = new int[0];
+    private int reservedNext;
+
+    private boolean closed;
+
+    /* commit recebe a entrada com o size final para ser gravada no diretorio */
+    public ArchiveOutputStream(BlockDevice device, Fat fat, DirEntry entry, Consumer<DirEntry> commit) {
+        this.device = device;
+        this.fat = fat;
+        this.entry = entry;
+        this.commit = commit;
+        this.buffer = new byte[device.blockSize()];
+    }
+
+    /* abre uma escrita que continua a partir do size atual do arquivo */
+    public static ArchiveOutputStream append(BlockDevice device, Fat fat, DirEntry entry, Consumer<DirEntry> commit) throws IOException {
+        ArchiveOutputStream out = new ArchiveOutputStream(device, fat, entry, commit);
+        out.seekToEnd();
+        return out;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Arquivo já foi fechado");
+
+        while (len > 0) {
+            int length = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, length);
+            count += length;
+            off += length;
+            len -= length;
+
+            if (count == buffer.length) writeBuffer();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            //ultimo bloco parcial, ou o primeiro bloco de um arquivo vazio
+            if (count > 0 || block < 0) writeBuffer();
+        } finally {
+            //o que sobrou da cadeia antiga deixa de fazer parte do arquivo
+            if (block >= 0) {
+                int rest = fat.get(block);
+                fat.set(block, Fat.FIM_DE_ARQUIVO);
+                freeChain(rest);
+            }
+            while (reservedNext < reserved.length) {
+                fat.release(reserved[reservedNext++]);
+            }
+
+            //se a FAT encheu no meio, o arquivo fica com o que chegou a ser gravado
+            entry.size = (int) stored;
+            commit.accept(entry);
+        }
+    }
+
+    //acha o ultimo bloco pelo size e pela cadeia da FAT em memoria e carrega a parte ja usada dele no buffer
+    private void seekToEnd() throws IOException {
+        long size = Math.max(0, entry.size);
+        long cheios = size / buffer.length;
+        int offset = (int) (size % buffer.length);
+
+        //anterior fica com o ultimo bloco cheio e cauda com o bloco onde o size termina
+        int anterior = -1;
+        int cauda = entry.first_block;
+        for (long i = 0; i < cheios; i++) {
+            if (!isDataBlock(cauda)) throw new IOException("A cadeia do arquivo é menor que o seu tamanho");
+            anterior = cauda;
+            cauda = fat.get(cauda);
+        }
+
+        //a proxima escrita vai para o bloco seguinte ao anterior, que e a cauda ou um bloco novo
+        block = anterior;
+        stored = size - offset;
+        count = offset;
+        if (offset > 0) {
+            if (!isDataBlock(cauda)) throw new IOException("A cadeia do arquivo é menor que o seu tamanho");
+            device.readBlock(cauda, buffer);
+        }
+    }
+
+    //completa o bloco com zeros e escreve ele no proximo bloco da cadeia
+    private void writeBuffer() throws IOException {
+        if (stored + count > Integer.MAX_VALUE) throw new IOException("Arquivo maior que o tamanho máximo");
+
+        for (int i = count; i < buffer.length; i++) {
+            buffer[i] = 0;
+        }
+
+        int target = nextBlock();
+        device.writeBlock(target, buffer);
+        block = target;
+        stored += count;
+        count = 0;
+    }
+
+    //proximo bloco da cadeia: o first_block, o seguinte da cadeia antiga ou um bloco novo encadeado no fim
+    private int nextBlock() throws IOException {
+        if (block < 0) return entry.first_block;
+
+        int next = fat.get(block);
+        if (isDataBlock(next)) return next;
+
+        int novo = allocate();
+        fat.set(novo, Fat.FIM_DE_ARQUIVO);
+        fat.set(block, novo);
+        return novo;
+    }
+
+    private int allocate() throws IOException {
+        if (reservedNext == reserved.length) {
+            int[] lote = fat.allocate(Math.min(ALLOCATION_BATCH, fat.freeBlocks()));
+            //outra escrita pode ter reservado blocos entre freeBlocks e allocate; tenta ao menos um bloco
+            if (lote == null || lote.length == 0) {
+                int um = fat.allocate();
+                if (um < 0) throw new IOException("A FAT está cheia");
+                lote = new int[]{um};
+            }
+            reserved = lote;
+            reservedNext = 0;
+        }
+        return reserved[reservedNext++];
+    }
+
+    private void freeChain(int block) {
+        while (isDataBlock(block)) {
+            int next = fat.get(block);
+            fat.set(block, 0);
+            block = next;
+        }
+    }
+
+    private boolean isDataBlock(int block) {
+        return block > 0 && block < fat.length() && block != Fat.FIM_DE_ARQUIVO && block != Fat.RESERVADO;
+    }
+}
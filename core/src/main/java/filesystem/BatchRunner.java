@@ -0,0 +1,61 @@
+package filesystem;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+//modo batch: executa os comandos de um arquivo ou da entrada padrao, sem prompt, e escreve a resposta de cada um
+//no formato de Commands.response. As alteracoes ficam na FAT em memoria e no cache de blocos e vao para o disco
+//em grupo (group commit): a cada commitEvery comandos ou commitMillis milissegundos, com um unico sync, ou antes
+//disso se o grupo estiver perto de nao caber no journal
+public class BatchRunner {
+    private final FileSystem fs;
+    private final int commitEvery;
+    private final long commitNanos;
+
+    /* comandos desde o ultimo commit e quando ele aconteceu */
+    private int pending;
+    private long lastCommit;
+
+    public BatchRunner(FileSystem fs, int commitEvery, long commitMillis) {
+        this.fs = fs;
+        this.commitEvery = commitEvery;
+        this.commitNanos = commitMillis * 1_000_000;
+    }
+
+    /* executa ate o fim da entrada ou um exit; devolve 0 se todos os comandos deram certo, 1 se algum falhou */
+    public int run(BufferedReader in, PrintStream out) throws IOException {
+        Commands commands = new Commands(fs);
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        PrintStream print = new PrintStream(saida, true, StandardCharsets.UTF_8);
+
+        int falhas = 0;
+        lastCommit = System.nanoTime();
+        String line;
+        while ((line = in.readLine()) != null) {
+            //linhas vazias e comentarios do script nao sao comandos
+            if (line.isBlank() || line.startsWith("#")) continue;
+
+            saida.reset();
+            int status = commands.execute(line, print);
+            out.print(Commands.response(status, saida.toString(StandardCharsets.UTF_8)));
+            if (status != Commands.OK && status != Commands.FIM) falhas++;
+            if (status == Commands.FIM) break;
+
+            pending++;
+            if (pending >= commitEvery || System.nanoTime() - lastCommit >= commitNanos || fs.commitDue()) groupCommit();
+        }
+        groupCommit();
+        out.flush();
+        return falhas == 0 ? 0 : 1;
+    }
+
+    //um unico ponto de commit para todos os comandos pendentes: FAT, blocos do cache e fsync
+    private void groupCommit() throws IOException {
+        if (pending > 0) fs.sync();
+        pending = 0;
+        lastCommit = System.nanoTime();
+    }
+}
@@ -0,0 +1,277 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//cache de blocos write-back com substituicao LRU na frente de outro dispositivo
+//blocos escritos ficam marcados como sujos e so vao para o disco quando saem do cache ou no sync/close
+//o cache e dividido em segmentos pelo numero do bloco, cada um com o seu LRU e o seu monitor,
+//entao threads que usam blocos diferentes (inclusive a de readahead) quase nunca esperam umas pelas outras
+public class BlockCache implements BlockDevice {
+    /* no maximo 16 segmentos, cada um com pelo menos 8 blocos */
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_BLOCKS = 8;
+
+    private final BlockDevice disk;
+    private final int blockSize;
+    private final int capacity;
+    private final Segment[] segments;
+
+    public BlockCache(BlockDevice disk, int capacity) {
+        this.disk = disk;
+        this.blockSize = disk.blockSize();
+        this.capacity = capacity;
+
+        int count = Math.max(1, Math.min(MAX_SEGMENTS, capacity / MIN_SEGMENT_BLOCKS));
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            //a capacidade e dividida entre os segmentos, com o resto nos primeiros
+            segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+    }
+
+    @Override
+    public int blockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void readBlock(int block, byte[] record) throws IOException {
+        segment(block).read(block, 0, record, 0, blockSize);
+    }
+
+    @Override
+    public void writeBlock(int block, byte[] record) throws IOException {
+        segment(block).writeBlock(block, record);
+    }
+
+    @Override
+    public void read(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int block = (int) (position / blockSize);
+            int offset = (int) (position % blockSize);
+            int length = Math.min(dst.remaining(), blockSize - offset);
+
+            segment(block).read(block, offset, dst, length);
+            position += length;
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            int block = (int) (position / blockSize);
+            int offset = (int) (position % blockSize);
+            int length = Math.min(src.remaining(), blockSize - offset);
+
+            segment(block).write(block, offset, src, length);
+            position += length;
+        }
+    }
+
+    @Override
+    public ByteBuffer blockView(int block) throws IOException {
+        return ByteBuffer.wrap(segment(block).cached(block)).asReadOnlyBuffer();
+    }
+
+    /* carrega o bloco no cache sem contar como acerto ou falta da leitura */
+    @Override
+    public void prefetch(int block) {
+        segment(block).prefetch(block);
+    }
+
+    /* descarta todos os blocos, inclusive os sujos, e apaga o dispositivo */
+    @Override
+    public boolean erase(long size) throws IOException {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+        return disk.erase(size);
+    }
+
+    /* escreve todos os blocos sujos no disco e sincroniza o dispositivo */
+    @Override
+    public void sync() throws IOException {
+        flush();
+        disk.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        disk.close();
+    }
+
+    /* escreve todos os blocos sujos no disco, mantendo eles no cache */
+    public void flush() throws IOException {
+        for (Segment segment : segments) {
+            segment.flush();
+        }
+    }
+
+    public long getHits() {
+        long total = 0;
+        for (Segment segment : segments) total += segment.hits();
+        return total;
+    }
+
+    public long getMisses() {
+        long total = 0;
+        for (Segment segment : segments) total += segment.misses();
+        return total;
+    }
+
+    public long getWriteBacks() {
+        long total = 0;
+        for (Segment segment : segments) total += segment.writeBacks();
+        return total;
+    }
+
+    public long getPrefetches() {
+        long total = 0;
+        for (Segment segment : segments) total += segment.prefetches();
+        return total;
+    }
+
+    public int getCachedBlocks() {
+        int total = 0;
+        for (Segment segment : segments) total += segment.size();
+        return total;
+    }
+
+    private Segment segment(int block) {
+        return segments[Math.floorMod(block, segments.length)];
+    }
+
+    //uma parte do cache: os blocos cujo numero cai neste segmento, com LRU e blocos sujos proprios
+    private final class Segment {
+        private final int capacity;
+
+        /* blocos em memoria, em ordem de acesso (o mais antigo primeiro) */
+        private final LinkedHashMap<Integer, byte[]> blocks;
+        /* blocos que foram alterados e ainda nao foram escritos no disco */
+        private final BitSet dirty = new BitSet();
+
+        private long hits;
+        private long misses;
+        private long writeBacks;
+        private long prefetches;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.blocks = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+        }
+
+        synchronized void read(int block, int offset, byte[] record, int off, int length) throws IOException {
+            System.arraycopy(cached(block), offset, record, off, length);
+        }
+
+        synchronized void read(int block, int offset, ByteBuffer dst, int length) throws IOException {
+            dst.put(cached(block), offset, length);
+        }
+
+        synchronized void writeBlock(int block, byte[] record) throws IOException {
+            byte[] data = blocks.get(block);
+            if (data == null) {
+                //o bloco inteiro vai ser sobrescrito, entao nao precisa ler ele do disco
+                data = new byte[blockSize];
+                insert(block, data);
+            }
+            System.arraycopy(record, 0, data, 0, blockSize);
+            dirty.set(block);
+        }
+
+        synchronized void write(int block, int offset, ByteBuffer src, int length) throws IOException {
+            src.get(cached(block), offset, length);
+            dirty.set(block);
+        }
+
+        synchronized void prefetch(int block) {
+            if (blocks.containsKey(block)) return;
+            try {
+                byte[] data = new byte[blockSize];
+                disk.readBlock(block, data);
+                insert(block, data);
+                prefetches++;
+            } catch (IOException ignored) {
+                //o bloco sera lido de novo quando for realmente pedido
+            }
+        }
+
+        synchronized void flush() throws IOException {
+            for (int block = dirty.nextSetBit(0); block >= 0; block = dirty.nextSetBit(block + 1)) {
+                disk.writeBlock(block, blocks.get(block));
+                writeBacks++;
+            }
+            dirty.clear();
+        }
+
+        synchronized void clear() {
+            blocks.clear();
+            dirty.clear();
+        }
+
+        //devolve o array do bloco no cache, lendo do disco se ele nao estiver em memoria
+        synchronized byte[] cached(int block) throws IOException {
+            byte[] data = blocks.get(block);
+            if (data != null) {
+                hits++;
+                return data;
+            }
+
+            misses++;
+            data = new byte[blockSize];
+            disk.readBlock(block, data);
+            insert(block, data);
+            return data;
+        }
+
+        //coloca o bloco no cache, tirando o menos usado recentemente se estiver cheio
+        private void insert(int block, byte[] data) throws IOException {
+            if (blocks.size() >= capacity) {
+                Iterator<Map.Entry<Integer, byte[]>> it = blocks.entrySet().iterator();
+                Map.Entry<Integer, byte[]> eldest = it.next();
+                int victim = eldest.getKey();
+
+                //bloco sujo precisa ir para o disco antes de sair do cache
+                if (dirty.get(victim)) {
+                    disk.writeBlock(victim, eldest.getValue());
+                    dirty.clear(victim);
+                    writeBacks++;
+                }
+                it.remove();
+            }
+            blocks.put(block, data);
+        }
+
+        synchronized long hits() {
+            return hits;
+        }
+
+        synchronized long misses() {
+            return misses;
+        }
+
+        synchronized long writeBacks() {
+            return writeBacks;
+        }
+
+        synchronized long prefetches() {
+            return prefetches;
+        }
+
+        synchronized int size() {
+            return blocks.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Cache: " + getHits() + " acertos, " + getMisses() + " faltas, " + getPrefetches() + " leituras antecipadas, "
+                + getWriteBacks() + " escritas no disco, " + getCachedBlocks() + "/" + capacity + " blocos";
+    }
+}
@@ -0,0 +1,48 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//dispositivo de blocos onde o volume do sistema de arquivos esta guardado
+//e aberto uma unica vez no inicio do programa e fechado no exit
+public interface BlockDevice {
+
+    /* tamanho de um bloco em bytes */
+    int blockSize();
+
+    /* le o bloco inteiro para dentro de record */
+    void readBlock(int block, byte[] record) throws IOException;
+
+    /* escreve o bloco inteiro a partir de record */
+    void writeBlock(int block, byte[] record) throws IOException;
+
+    /* le dst.remaining() bytes a partir da posicao absoluta position do volume */
+    void read(ByteBuffer dst, long position) throws IOException;
+
+    /* escreve src.remaining() bytes a partir da posicao absoluta position do volume */
+    void write(ByteBuffer src, long position) throws IOException;
+
+    /* devolve o conteudo do bloco somente para leitura; dispositivos mapeados em memoria devolvem uma fatia sem copia */
+    default ByteBuffer blockView(int block) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize());
+        read(buffer, (long) block * blockSize());
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /* apaga o volume: ele passa a ter size bytes, todos lidos como zeros, sem que os blocos sejam escritos;
+       devolve false se o dispositivo nao garante os zeros, e entao cada bloco deve ser zerado quando for usado */
+    default boolean erase(long size) throws IOException {
+        return false;
+    }
+
+    /* avisa que o bloco vai ser lido em breve; chamado pela thread de readahead, erros sao ignorados */
+    default void prefetch(int block) {
+    }
+
+    /* garante que tudo que foi escrito chegou no disco */
+    void sync() throws IOException;
+
+    /* fecha o dispositivo */
+    void close() throws IOException;
+}
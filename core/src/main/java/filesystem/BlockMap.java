@@ -0,0 +1,26 @@
+package filesystem;
+
+import java.io.IOException;
+
+//blocos de um arquivo na ordem em que aparecem nele: a cadeia da FAT (FatChain) ou a lista de extents (ExtentList)
+//o FileHandle acha o bloco de uma posicao, aumenta e diminui o arquivo so por aqui
+public interface BlockMap {
+
+    /* quantidade de blocos do arquivo */
+    int blocks();
+
+    /* bloco do volume onde fica o i-esimo bloco do arquivo */
+    int block(int i);
+
+    /* quantos blocos a partir do i-esimo (ate max) estao em sequencia no volume; pelo menos 1 */
+    int run(int i, int max);
+
+    /* aumenta o arquivo ate n blocos, marcando os blocos novos na FAT em memoria; eles nao sao zerados */
+    void grow(int n) throws IOException;
+
+    /* diminui o arquivo para n blocos e libera o resto na FAT em memoria */
+    void shrink(int n);
+
+    /* grava o que mudou no mapa e ainda nao esta na FAT; chamado no close do FileHandle */
+    void store() throws IOException;
+}
@@ -0,0 +1,204 @@
+package filesystem;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+//interpreta uma linha de comando e executa no sistema de arquivos, escrevendo a saida em out
+//e o mesmo interpretador para o shell interativo e para as conexoes do servidor; devolve o status do comando
+public class Commands {
+    /* status de um comando */
+    static final int OK = 0;
+    static final int USO = 1; //comando desconhecido ou argumentos faltando
+    static final int FALHA = 2; //o sistema de arquivos recusou a operacao
+    static final int FIM = 3; //exit
+
+    private static final String CAMINHO = "Por favor, insira o caminho específico para executar o comando adequadamente";
+    private static final String FIND = "Use: find <caminho completo> [-name <padrão>] [-type f|d]";
+
+    private final FileSystem fs;
+
+    public Commands(FileSystem fs) {
+        this.fs = fs;
+    }
+
+    public int execute(String line, PrintStream out) {
+        // separa comando
+        String[] command = line.split(" ");
+        long inicio = System.nanoTime();
+        int status = run(command, out);
+
+        //comandos desconhecidos ou com argumentos faltando nao entram nas metricas
+        if (status == OK || status == FALHA) fs.metrics().record(command[0], System.nanoTime() - inicio);
+        return status;
+    }
+
+    private int run(String[] command, PrintStream out) {
+        String op = command[0];
+
+        try {
+            switch (op) {
+                case "exit":
+                    out.println("Finalizando sistema");
+                    return FIM;
+
+                case "sync":
+                    try {
+                        fs.sync();
+                        out.println("Sincronização concluída");
+                    } catch (IOException e) {
+                        out.println(e.getMessage());
+                        return FALHA;
+                    }
+                    return OK;
+
+                case "cache":
+                    out.println(fs.cacheStats());
+                    return OK;
+
+                case "stats":
+                    out.println(fs.metrics());
+                    return OK;
+
+                case "init":
+                    if (command.length == 1) fs.init();
+                    else if (command.length == 3) fs.init(Integer.parseInt(command[1]), Integer.parseInt(command[2]));
+                    else return usage(out, "Use: init [<tamanho do bloco> <blocos>]");
+                    out.println("Inicialização concluída");
+                    return OK;
+
+                case "ls":
+                    //ls -R <caminho> lista tambem tudo que esta dentro dos subdiretorios
+                    if (command.length > 1 && command[1].equals("-R")) {
+                        if (command.length < 3 || !isRootPath(command[2])) return usage(out, CAMINHO);
+                        fs.lsRecursive(command[2], out::println);
+                        return OK;
+                    }
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    for (String file : fs.ls(command[1])) {
+                        out.println(file);
+                    }
+                    return OK;
+
+                case "find":
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    String glob = null;
+                    char type = 0;
+                    for (int i = 2; i < command.length; i += 2) {
+                        if (i + 1 == command.length) return usage(out, FIND);
+                        if (command[i].equals("-name")) glob = command[i + 1];
+                        else if (command[i].equals("-type") && (command[i + 1].equals("f") || command[i + 1].equals("d"))) type = command[i + 1].charAt(0);
+                        else return usage(out, FIND);
+                    }
+                    fs.find(command[1], glob, type, out::println);
+                    return OK;
+
+                case "du":
+                    //du -s <caminho> mostra so o total do diretorio pedido
+                    boolean resumo = command.length > 1 && command[1].equals("-s");
+                    String dir = command.length > (resumo ? 2 : 1) ? command[resumo ? 2 : 1] : null;
+                    if (dir == null || !isRootPath(dir)) return usage(out, CAMINHO);
+                    fs.du(dir, resumo, out::println);
+                    return OK;
+
+                case "read":
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    fs.readArchive(command[1], out);
+                    return OK;
+
+                case "mkdir":
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    fs.mkdir(command[1]);
+                    return OK;
+
+                case "create":
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    fs.createArchive(command[1], content(command, 2));
+                    return OK;
+
+                case "write":
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    fs.writeArchive(command[1], content(command, 2));
+                    return OK;
+
+                case "unlink":
+                    //unlink -r <caminho> exclui o diretorio com tudo que esta dentro dele
+                    boolean recursivo = command.length > 1 && command[1].equals("-r");
+                    String alvo = command.length > (recursivo ? 2 : 1) ? command[recursivo ? 2 : 1] : null;
+                    if (alvo == null || !isRootPath(alvo)) return usage(out, CAMINHO);
+                    if (alvo.equals("root")) {
+                        out.println("Não é possível excluir a root. Para formatar, use init");
+                        return FALHA;
+                    }
+                    out.println(recursivo ? fs.unlinkRecursive(alvo) : fs.unlink(alvo));
+                    return OK;
+
+                case "append":
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    fs.append(command[1], content(command, 2));
+                    return OK;
+
+                case "pread":
+                    if (command.length < 4) return usage(out, "Use: pread <caminho completo> <posição> <tamanho>");
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    out.println(fs.readAt(command[1], Long.parseLong(command[2]), Integer.parseInt(command[3])));
+                    return OK;
+
+                case "pwrite":
+                    if (command.length < 4) return usage(out, "Use: pwrite <caminho completo> <posição> <conteúdo>");
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    fs.writeAt(command[1], Long.parseLong(command[2]), String.join(" ", Arrays.copyOfRange(command, 3, command.length)));
+                    return OK;
+
+                case "truncate":
+                    if (command.length < 3) return usage(out, "Use: truncate <caminho completo> <tamanho>");
+                    if (!hasRootPath(command)) return usage(out, CAMINHO);
+                    fs.truncate(command[1], Long.parseLong(command[2]));
+                    return OK;
+
+                default:
+                    return usage(out, "Opção inválida");
+            }
+        } catch (FileSystemException e) {
+            out.println(e.getMessage());
+            return FALHA;
+        } catch (NumberFormatException e) {
+            return usage(out, "Número inválido: " + e.getMessage());
+        }
+    }
+
+    /* resposta de um comando para o servidor e o modo batch: "OK <n>" seguida das n linhas de saida, ou "ERR <status> <mensagem>" */
+    static String response(int status, String output) {
+        if (status == OK || status == FIM) {
+            int linhas = 0;
+            for (int i = 0; i < output.length(); i++) {
+                if (output.charAt(i) == '\n') linhas++;
+            }
+            return "OK " + linhas + "\n" + output;
+        }
+        return "ERR " + status + " " + output.strip().replace('\n', ' ') + "\n";
+    }
+
+    //o caminho tem que ser informado e começar pela root
+    private static boolean hasRootPath(String[] command) {
+        return command.length > 1 && isRootPath(command[1]);
+    }
+
+    private static boolean isRootPath(String path) {
+        return path.split("/")[0].equalsIgnoreCase("root");
+    }
+
+    //junta as palavras do conteudo, cada uma seguida de um espaço como o shell sempre fez
+    private static String content(String[] command, int from) {
+        StringBuilder conteudo = new StringBuilder();
+        for (int i = from; i < command.length; i++) {
+            conteudo.append(command[i]).append(' ');
+        }
+        return conteudo.toString();
+    }
+
+    private static int usage(PrintStream out, String message) {
+        out.println(message);
+        return USO;
+    }
+}
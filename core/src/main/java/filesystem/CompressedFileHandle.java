@@ -0,0 +1,245 @@
+package filesystem;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//arquivo comprimido: o conteudo e dividido em chunks de CHUNK bytes, cada um comprimido sozinho com o Deflater
+//(BEST_SPEED) e gravado logo depois do anterior nos blocos do arquivo, com 4 bytes antes dele com o tamanho gravado
+//o size da entrada continua sendo o tamanho logico, entao a quantidade de chunks e o tamanho de cada um saem dele
+//ler em qualquer posicao descomprime so os chunks daquele trecho; escrever reescreve do primeiro chunk alterado
+//ate o fim, entao um append so reescreve o ultimo chunk
+//um chunk que nao diminui com a compressao é gravado como esta, com o tamanho negativo no cabecalho
+public class CompressedFileHandle extends FileHandle {
+    static final int CHUNK = 32 * 1024;
+    private static final int HEADER = 4;
+
+    /* posicao nos blocos do arquivo e tamanho gravado de cada chunk (negativo se nao comprimido) */
+    private long[] offsets = new long[0];
+    private int[] stored = new int[0];
+    private int chunks;
+
+    /* ultimo chunk descomprimido, para leituras sequenciais nao descomprimirem o mesmo chunk de novo */
+    private int cachedChunk = -1;
+    private byte[] cachedData;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+
+    public CompressedFileHandle(BlockDevice device, DirEntry entry, BlockMap blocks, boolean writable, Consumer<DirEntry> commit, Runnable release) throws IOException {
+        super(device, entry, blocks, writable, commit, release);
+        loadIndex();
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        checkOpen();
+        checkPosition(position);
+        if (position >= size()) return -1;
+
+        int total = 0;
+        while (dst.hasRemaining() && position < size()) {
+            int c = (int) (position / CHUNK);
+            int offset = (int) (position % CHUNK);
+            byte[] data = chunk(c);
+            int length = Math.min(dst.remaining(), data.length - offset);
+            dst.put(data, offset, length);
+
+            position += length;
+            total += length;
+        }
+        return total;
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        checkWritable();
+        checkPosition(position);
+        int total = src.remaining();
+        long end = position + total;
+        if (end > Integer.MAX_VALUE) throw new IOException("Arquivo maior que o tamanho máximo");
+
+        rewrite(Math.min(position, size()), Math.max(end, size()), src, position);
+        return total;
+    }
+
+    @Override
+    public void truncate(long newSize) throws IOException {
+        checkWritable();
+        if (newSize < 0 || newSize > Integer.MAX_VALUE) throw new IOException("Tamanho inválido: " + newSize);
+        if (newSize == size()) return;
+
+        rewrite(Math.min(newSize, size()), newSize, null, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            deflater.end();
+            inflater.end();
+        }
+    }
+
+    /* cada write no arquivo reescreve o ultimo chunk, entao a escrita sequencial junta CHUNK bytes antes de escrever */
+    @Override
+    public OutputStream asOutputStream(long position) {
+        return new BufferedOutputStream(super.asOutputStream(position), CHUNK);
+    }
+
+    //le o cabecalho de cada chunk, em sequencia, para saber onde cada um começa
+    private void loadIndex() throws IOException {
+        int count = (int) ((size() + CHUNK - 1) / CHUNK);
+        ensureIndex(count);
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        long offset = 0;
+        for (int c = 0; c < count; c++) {
+            header.clear();
+            readBlocks(header, offset);
+            int length = header.flip().getInt();
+            if (length == 0 || Math.abs(length) > CHUNK) {
+                throw new IOException("Chunk " + c + " do arquivo comprimido está corrompido");
+            }
+            offsets[c] = offset;
+            stored[c] = length;
+            offset += HEADER + Math.abs(length);
+        }
+        chunks = count;
+    }
+
+    //conteudo descomprimido do chunk c
+    private byte[] chunk(int c) throws IOException {
+        if (c == cachedChunk) return cachedData;
+
+        byte[] data = decode(c, readStored(c));
+        cachedChunk = c;
+        cachedData = data;
+        return data;
+    }
+
+    //bytes do chunk c como estao gravados, sem o cabecalho
+    private byte[] readStored(int c) throws IOException {
+        byte[] bytes = new byte[Math.abs(stored[c])];
+        readBlocks(ByteBuffer.wrap(bytes), offsets[c] + HEADER);
+        return bytes;
+    }
+
+    private byte[] decode(int c, byte[] bytes) throws IOException {
+        return stored[c] < 0 ? bytes : inflate(bytes, chunkLength(c, size()));
+    }
+
+    //reescreve o arquivo a partir do chunk que contem from, com o tamanho logico newSize e, se src nao for null,
+    //o conteudo de src na posicao position; cada chunk é gravado assim que fica pronto, e so um chunk novo que
+    //cresceu e passa por cima dos seguintes faz eles serem lidos antes, ainda no formato gravado
+    private void rewrite(long from, long newSize, ByteBuffer src, long position) throws IOException {
+        int first = (int) (from / CHUNK);
+        int count = (int) ((newSize + CHUNK - 1) / CHUNK);
+        int old = Math.min(chunks, count);
+        long offset = first < chunks ? offsets[first] : physicalEnd();
+
+        //chunks antigos ja lidos porque o lugar deles foi ocupado; next é o primeiro que ainda esta nos blocos
+        ArrayDeque<byte[]> ahead = new ArrayDeque<>();
+        int next = first;
+        ensureIndex(count);
+        for (int c = first; c < count; c++) {
+            byte[] data = new byte[chunkLength(c, newSize)];
+            //o que ja existia no chunk; o resto fica com zeros
+            if (c < old) {
+                byte[] previous = c < next ? decode(c, ahead.poll()) : chunk(c);
+                next = Math.max(next, c + 1);
+                System.arraycopy(previous, 0, data, 0, Math.min(previous.length, data.length));
+            }
+            if (src != null) patch(data, (long) c * CHUNK, src, position);
+
+            byte[] compressed = deflate(data);
+            boolean raw = compressed.length >= data.length;
+            byte[] body = raw ? data : compressed;
+            ByteBuffer record = ByteBuffer.allocate(HEADER + body.length);
+            record.putInt(raw ? -body.length : body.length).put(body).flip();
+
+            while (next < old && offsets[next] < offset + record.remaining()) {
+                ahead.add(readStored(next++));
+            }
+            writeBlocks(record, offset);
+
+            offsets[c] = offset;
+            stored[c] = raw ? -body.length : body.length;
+            offset += HEADER + body.length;
+        }
+        cachedChunk = -1;
+        chunks = count;
+
+        //os blocos que sobraram depois do ultimo chunk voltam para a FAT
+        releaseBlocksAfter(offset);
+        if (src != null) src.position(src.limit());
+        resize(newSize);
+    }
+
+    //copia para o chunk que começa em chunkStart a parte de src (escrita a partir de position) que cai nele
+    private static void patch(byte[] data, long chunkStart, ByteBuffer src, long position) {
+        long begin = Math.max(chunkStart, position);
+        long end = Math.min(chunkStart + data.length, position + src.remaining());
+        if (begin >= end) return;
+
+        ByteBuffer part = src.duplicate();
+        part.position(src.position() + (int) (begin - position));
+        part.get(data, (int) (begin - chunkStart), (int) (end - begin));
+    }
+
+    private byte[] deflate(byte[] data) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        //o resultado so interessa se for menor que a entrada; maior que isso o chunk é gravado sem comprimir
+        byte[] out = new byte[data.length];
+        int length = 0;
+        while (!deflater.finished() && length < out.length) {
+            length += deflater.deflate(out, length, out.length - length);
+        }
+        return deflater.finished() ? Arrays.copyOf(out, length) : data;
+    }
+
+    private byte[] inflate(byte[] bytes, int length) throws IOException {
+        inflater.reset();
+        inflater.setInput(bytes);
+        byte[] data = new byte[length];
+        try {
+            int done = 0;
+            while (done < length && !inflater.finished()) {
+                int n = inflater.inflate(data, done, length - done);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                done += n;
+            }
+            if (done != length) throw new IOException("Chunk do arquivo comprimido está incompleto");
+        } catch (DataFormatException e) {
+            throw new IOException("Chunk do arquivo comprimido está corrompido: " + e.getMessage());
+        }
+        return data;
+    }
+
+    //tamanho logico do chunk c num arquivo de size bytes
+    private static int chunkLength(int c, long size) {
+        return (int) Math.min(CHUNK, size - (long) c * CHUNK);
+    }
+
+    //fim do ultimo chunk nos blocos do arquivo
+    private long physicalEnd() {
+        return chunks == 0 ? 0 : offsets[chunks - 1] + HEADER + Math.abs(stored[chunks - 1]);
+    }
+
+    private void ensureIndex(int count) {
+        if (count > offsets.length) {
+            int capacity = Math.max(count, offsets.length * 2);
+            offsets = Arrays.copyOf(offsets, capacity);
+            stored = Arrays.copyOf(stored, capacity);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+//arquivo em modo dedup (sempre em modo extent): cada bloco escrito passa pela tabela de dedup, que aponta o bloco do
+//arquivo para um bloco igual que ja existe em vez de escrever outro; um bloco compartilhado nunca é escrito por cima,
+//a escrita vai para um bloco novo so deste arquivo
+//os blocos sao reservados um a um pela tabela, na hora de escrever, e nao antes como nos outros arquivos
+public class DedupFileHandle extends FileHandle {
+    private final ExtentList extents;
+    private final DedupTable dedup;
+    private final int blockSize;
+
+    public DedupFileHandle(BlockDevice device, DirEntry entry, ExtentList extents, DedupTable dedup, boolean writable,
+                           Consumer<DirEntry> commit, Runnable release) {
+        super(device, entry, extents, writable, commit, release);
+        this.extents = extents;
+        this.dedup = dedup;
+        this.blockSize = device.blockSize();
+    }
+
+    @Override
+    void ensureBlocks(long end) {
+        //os blocos novos sao reservados pela tabela em writeBlocks
+    }
+
+    /* escreve bloco a bloco; um bloco escrito pela metade é completado com o que ele ja tinha */
+    @Override
+    void writeBlocks(ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            int i = (int) (position / blockSize);
+            int offset = (int) (position % blockSize);
+            int length = Math.min(src.remaining(), blockSize - offset);
+
+            byte[] data = new byte[blockSize];
+            if (length < blockSize && i < extents.blocks()) {
+                readBlocks(ByteBuffer.wrap(data), (long) i * blockSize);
+            }
+            src.get(data, offset, length);
+            dedup.store(extents, i, data);
+
+            position += length;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+//tabela de deduplicacao: para cada bloco de dados gravado por um arquivo em modo dedup, a impressao digital do conteudo
+//e quantas posicoes de arquivos apontam para ele; um bloco com o mesmo conteudo de outro ja gravado nao é escrito de novo
+//a impressao digital so indica o candidato: o conteudo dele é comparado antes de ser reaproveitado
+//no disco a tabela sao registros de 16 bytes [bloco][referencias][impressao digital], dois por pedaço de 32 bytes,
+//em blocos de metadados encadeados na FAT e gravados pelo journal como os diretorios; o primeiro bloco da tabela
+//fica no pedaço HEAD_SLOT do bloco 0, depois do superbloco
+public class DedupTable {
+    private static final int HEAD_SLOT = 2;
+    private static final int RECORD = 16;
+    private static final int SLOT = DirBlock.ENTRY_SIZE;
+
+    //bloco com as referencias e a posicao do registro dele na tabela
+    private static final class Entry {
+        final int block;
+        final int record;
+        int refs;
+        long fingerprint;
+
+        Entry(int block, int record, int refs, long fingerprint) {
+            this.block = block;
+            this.record = record;
+            this.refs = refs;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    private final Fat fat;
+    private final ExtentList.Metadata metadata;
+    private final BlockDevice device;
+    private final int blockSize;
+    private final int perBlock;
+
+    /* blocos da tabela e o conteudo de cada um como esta no volume */
+    private final ArrayList<Integer> tableBlocks = new ArrayList<>();
+    private final ArrayList<byte[]> images = new ArrayList<>();
+    /* registros livres, contando desde o primeiro bloco da tabela */
+    private final BitSet freeRecords = new BitSet();
+
+    private final HashMap<Integer, Entry> byBlock = new HashMap<>();
+    private final HashMap<Long, Integer> byFingerprint = new HashMap<>();
+
+    private DedupTable(Fat fat, ExtentList.Metadata metadata, BlockDevice device) {
+        this.fat = fat;
+        this.metadata = metadata;
+        this.device = device;
+        this.blockSize = device.blockSize();
+        this.perBlock = blockSize / RECORD;
+    }
+
+    /* le a tabela do volume; um volume que nunca usou dedup comeca com a tabela vazia */
+    static DedupTable load(Fat fat, ExtentList.Metadata metadata, BlockDevice device) throws IOException {
+        DedupTable table = new DedupTable(fat, metadata, device);
+        int block = metadata.read(0).getInt(HEAD_SLOT * SLOT);
+        for (int hops = 0; block > 0 && block < fat.length() && hops < fat.length(); hops++) {
+            byte[] image = new byte[table.blockSize];
+            metadata.read(block).get(0, image);
+            int base = table.tableBlocks.size() * table.perBlock;
+            table.tableBlocks.add(block);
+            table.images.add(image);
+
+            ByteBuffer bytes = ByteBuffer.wrap(image);
+            for (int r = 0; r < table.perBlock; r++) {
+                int data = bytes.getInt();
+                int refs = bytes.getInt();
+                long fingerprint = bytes.getLong();
+                if (data == 0) {
+                    table.freeRecords.set(base + r);
+                    continue;
+                }
+                if (refs <= 0 || data >= fat.length()) throw new IOException("Tabela de dedup corrompida no bloco " + block);
+                table.byBlock.put(data, new Entry(data, base + r, refs, fingerprint));
+                table.byFingerprint.putIfAbsent(fingerprint, data);
+            }
+
+            int next = fat.get(block);
+            if (next == Fat.FIM_DE_ARQUIVO) break;
+            block = next;
+        }
+        return table;
+    }
+
+    /* grava data como o i-esimo bloco do arquivo: reaproveita um bloco igual, escreve no lugar se o bloco atual so é
+       desse arquivo, ou escreve em um bloco novo (copia na escrita) se o bloco atual é compartilhado */
+    synchronized void store(ExtentList file, int i, byte[] data) throws IOException {
+        int current = i < file.blocks() ? file.block(i) : -1;
+        long fingerprint = fingerprint(data);
+
+        int match = find(fingerprint, data);
+        if (match >= 0) {
+            if (match == current) return;
+            Entry entry = byBlock.get(match);
+            entry.refs++;
+            writeRecord(entry);
+            if (current >= 0) release(current);
+            file.map(i, match);
+            return;
+        }
+
+        Entry owned = current >= 0 ? byBlock.get(current) : null;
+        if (owned != null && owned.refs == 1) {
+            //ninguem mais aponta para o bloco: escreve por cima e troca a impressao digital
+            device.write(ByteBuffer.wrap(data), (long) current * blockSize);
+            if (byFingerprint.getOrDefault(owned.fingerprint, -1) == current) byFingerprint.remove(owned.fingerprint);
+            owned.fingerprint = fingerprint;
+            byFingerprint.putIfAbsent(fingerprint, current);
+            writeRecord(owned);
+            return;
+        }
+
+        int novo = fat.allocate();
+        if (novo < 0) throw new IOException("A FAT está cheia");
+        fat.set(novo, Fat.FIM_DE_ARQUIVO);
+        device.write(ByteBuffer.wrap(data), (long) novo * blockSize);
+        Entry entry = new Entry(novo, takeRecord(), 1, fingerprint);
+        byBlock.put(novo, entry);
+        byFingerprint.putIfAbsent(fingerprint, novo);
+        writeRecord(entry);
+
+        if (current >= 0) release(current);
+        file.map(i, novo);
+    }
+
+    /* tira uma referencia de cada bloco da sequencia; os que ficam sem nenhuma voltam para a FAT */
+    synchronized void release(int start, int length) {
+        for (int block = start; block < start + length; block++) {
+            release(block);
+        }
+    }
+
+    //tira uma referencia do bloco; um bloco que nao esta na tabela é so do arquivo que o solta
+    private void release(int block) {
+        Entry entry = byBlock.get(block);
+        if (entry != null && --entry.refs > 0) {
+            writeRecord(entry);
+            return;
+        }
+
+        if (entry != null) {
+            byBlock.remove(block);
+            if (byFingerprint.getOrDefault(entry.fingerprint, -1) == block) byFingerprint.remove(entry.fingerprint);
+            clearRecord(entry.record);
+        }
+        fat.set(block, 0);
+    }
+
+    //bloco ja gravado com exatamente esse conteudo, ou -1
+    private int find(long fingerprint, byte[] data) throws IOException {
+        Integer candidate = byFingerprint.get(fingerprint);
+        if (candidate == null) return -1;
+
+        ByteBuffer existing = ByteBuffer.allocate(blockSize);
+        device.read(existing, (long) candidate * blockSize);
+        return Arrays.equals(existing.array(), data) ? candidate : -1;
+    }
+
+    //FNV-1a de 64 bits, 8 bytes por vez
+    private static long fingerprint(byte[] data) {
+        ByteBuffer bytes = ByteBuffer.wrap(data);
+        long hash = 0xcbf29ce484222325L;
+        while (bytes.remaining() >= 8) {
+            hash = (hash ^ bytes.getLong()) * 0x100000001b3L;
+        }
+        while (bytes.hasRemaining()) {
+            hash = (hash ^ bytes.get()) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    //primeiro registro livre, encadeando um bloco novo na tabela se todos estiverem ocupados
+    private int takeRecord() throws IOException {
+        int record = freeRecords.nextSetBit(0);
+        if (record < 0) {
+            int novo = fat.allocate();
+            if (novo < 0) throw new IOException("A FAT está cheia");
+            fat.set(novo, Fat.FIM_DE_ARQUIVO);
+            metadata.zero(novo);
+
+            if (tableBlocks.isEmpty()) {
+                ByteBuffer head = ByteBuffer.allocate(SLOT);
+                head.putInt(0, novo);
+                metadata.write(0, HEAD_SLOT, head);
+            } else {
+                fat.set(tableBlocks.get(tableBlocks.size() - 1), novo);
+            }
+
+            record = tableBlocks.size() * perBlock;
+            tableBlocks.add(novo);
+            images.add(new byte[blockSize]);
+            freeRecords.set(record, record + perBlock);
+        }
+        freeRecords.clear(record);
+        return record;
+    }
+
+    private void writeRecord(Entry entry) {
+        putRecord(entry.record, entry.block, entry.refs, entry.fingerprint);
+    }
+
+    private void clearRecord(int record) {
+        putRecord(record, 0, 0, 0);
+        freeRecords.set(record);
+    }
+
+    //altera o registro na imagem do bloco e grava o pedaço de 32 bytes onde ele fica
+    private void putRecord(int record, int block, int refs, long fingerprint) {
+        int k = record / perBlock;
+        int offset = (record % perBlock) * RECORD;
+        byte[] image = images.get(k);
+        ByteBuffer.wrap(image, offset, RECORD).putInt(block).putInt(refs).putLong(fingerprint);
+
+        int slot = offset / SLOT;
+        metadata.write(tableBlocks.get(k), slot, ByteBuffer.wrap(image, slot * SLOT, SLOT));
+    }
+}
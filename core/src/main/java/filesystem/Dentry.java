@@ -0,0 +1,35 @@
+package filesystem;
+
+//resultado da resolucao de um caminho: onde a entrada de diretorio fica e o que ela contem
+//uma Dentry negativa (entry == null) guarda que o caminho nao existe
+public class Dentry {
+    final String path;
+    /* primeiro bloco do diretorio pai, -1 para a root */
+    final int parentDir;
+    /* bloco da cadeia do diretorio pai onde fica a entrada, -1 para a root */
+    final int parentBlock;
+    /* numero da entrada dentro do bloco do diretorio pai */
+    final int index;
+    /* copia da entrada de diretorio; alteracoes de tamanho/bloco devem ser feitas aqui tambem */
+    final DirEntry entry;
+
+    Dentry(String path, int parentDir, int parentBlock, int index, DirEntry entry) {
+        this.path = path;
+        this.parentDir = parentDir;
+        this.parentBlock = parentBlock;
+        this.index = index;
+        this.entry = entry;
+    }
+
+    static Dentry negative(String path) {
+        return new Dentry(path, -1, -1, -1, null);
+    }
+
+    boolean exists() {
+        return entry != null;
+    }
+
+    boolean isRoot() {
+        return entry != null && parentBlock == -1;
+    }
+}
@@ -0,0 +1,109 @@
+package filesystem;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//visao de um bloco de diretorio inteiro: as entradas sao decodificadas direto do buffer do bloco
+//o bloco e buscado uma vez por varredura e todas as entradas sao expostas pelo mesmo objeto Entry (flyweight)
+//com a FAT de 16 bits a entrada tem nome de 25 bytes e first_block de 2; com a de 32 bits o nome perde 2 bytes
+//para o first_block de 4, e a entrada continua com 32 bytes
+public class DirBlock {
+    static final int ENTRY_SIZE = 32;
+
+    /* o size fica nos 4 ultimos bytes da entrada; antes dele vem o first_block, os atributos e o nome */
+    private static final int SIZE = 28;
+
+    private final ByteBuffer bytes;
+    private final int entries;
+    private final int pointerSize;
+    private final int nameSize;
+    private final Entry flyweight = new Entry();
+
+    /* pointerSize e a largura da FAT do volume: 2 ou 4 bytes */
+    public DirBlock(ByteBuffer bytes, int pointerSize) {
+        this.bytes = bytes;
+        this.entries = bytes.capacity() / ENTRY_SIZE;
+        this.pointerSize = pointerSize;
+        this.nameSize = nameSize(pointerSize);
+    }
+
+    /* bytes do nome em uma entrada com ponteiro de pointerSize bytes */
+    static int nameSize(int pointerSize) {
+        return SIZE - pointerSize - 1;
+    }
+
+    /* numero de entradas do bloco */
+    public int entries() {
+        return entries;
+    }
+
+    /* posiciona o flyweight na entrada i; o objeto devolvido e o mesmo a cada chamada */
+    public Entry entry(int i) {
+        flyweight.offset = i * ENTRY_SIZE;
+        flyweight.index = i;
+        return flyweight;
+    }
+
+    /* codifica uma entrada de diretorio nos 32 bytes do formato em disco */
+    public static ByteBuffer encode(DirEntry dir_entry, int pointerSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+        buffer.put(dir_entry.filename, 0, nameSize(pointerSize));
+        buffer.put(dir_entry.attributes);
+        if (pointerSize == 2) buffer.putShort((short) dir_entry.first_block);
+        else buffer.putInt(dir_entry.first_block);
+        buffer.putInt(dir_entry.size);
+        buffer.flip();
+        return buffer;
+    }
+
+    //entrada de diretorio lida sob demanda do buffer do bloco
+    public class Entry {
+        private int offset;
+        private int index;
+
+        public int index() {
+            return index;
+        }
+
+        public byte attributes() {
+            return bytes.get(offset + nameSize);
+        }
+
+        public int firstBlock() {
+            int position = offset + nameSize + 1;
+            return pointerSize == 2 ? bytes.getShort(position) & 0xffff : bytes.getInt(position);
+        }
+
+        public int size() {
+            return bytes.getInt(offset + SIZE);
+        }
+
+        public boolean isEmpty() {
+            return attributes() == 0;
+        }
+
+        /* nome da entrada, ate o primeiro byte 0 */
+        public String name() {
+            int length = nameLength();
+            byte[] name = new byte[length];
+            bytes.get(offset, name, 0, length);
+            return new String(name, StandardCharsets.UTF_8);
+        }
+
+        /* copia a entrada para um DirEntry independente do bloco */
+        public DirEntry toDirEntry() {
+            DirEntry dir_entry = new DirEntry();
+            bytes.get(offset, dir_entry.filename, 0, nameSize);
+            dir_entry.attributes = attributes();
+            dir_entry.first_block = firstBlock();
+            dir_entry.size = size();
+            return dir_entry;
+        }
+
+        private int nameLength() {
+            int length = 0;
+            while (length < nameSize && bytes.get(offset + length) != 0) length++;
+            return length;
+        }
+    }
+}
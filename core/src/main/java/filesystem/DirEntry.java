@@ -0,0 +1,25 @@
+package filesystem;
+
+public class DirEntry {
+	static final byte ARQUIVO = 0x01;
+	static final byte DIRETORIO = 0x02;
+	/* junto com ARQUIVO: first_block aponta para a lista de extents do arquivo, e nao para o primeiro bloco de dados */
+	static final byte EXTENTS = 0x04;
+	/* junto com ARQUIVO: o conteudo esta comprimido em chunks (CompressedFileHandle); size continua sendo o tamanho logico */
+	static final byte COMPRIMIDO = 0x08;
+	/* junto com ARQUIVO e EXTENTS: os blocos de dados podem estar em outros arquivos (DedupTable) */
+	static final byte DEDUP = 0x10;
+
+	byte[] filename = new byte[25];
+
+	//0x00 - em branco
+	//0x01 - arquivo
+	//0x02 - diretorio
+	//0x05 - arquivo em modo extent
+	//0x09 - arquivo comprimido (0x0d - comprimido e em modo extent)
+	//0x15 - arquivo em modo dedup
+	byte attributes;
+
+	int first_block;
+	int size;
+}
@@ -0,0 +1,132 @@
+package filesystem;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.function.IntFunction;
+
+//diretorio que cresce por uma cadeia da FAT, igual a um arquivo
+//o indice nome -> posicao e as posicoes livres sao montados em memoria na primeira vez que o diretorio e usado,
+//entao procurar e inserir nao dependem da quantidade de entradas
+//uma posicao (slot) e o numero da entrada contando desde o primeiro bloco: posicaoNaCadeia * entradasPorBloco + entrada
+public class Directory {
+    final int firstBlock;
+    private final int entriesPerBlock;
+
+    /* blocos da cadeia do diretorio, em ordem */
+    private int[] blocks = new int[4];
+    private int blockCount;
+
+    private final HashMap<String, Integer> names = new HashMap<>();
+    private final BitSet free = new BitSet();
+
+    private Directory(int firstBlock, int entriesPerBlock) {
+        this.firstBlock = firstBlock;
+        this.entriesPerBlock = entriesPerBlock;
+    }
+
+    /* le a cadeia inteira do diretorio uma vez e monta o indice */
+    static Directory load(int firstBlock, Fat fat, IntFunction<DirBlock> reader) {
+        Directory dir = null;
+        int block = firstBlock;
+
+        //o limite de blocos protege contra uma cadeia corrompida que volta para ela mesma
+        for (int hops = 0; hops < fat.length(); hops++) {
+            DirBlock dirBlock = reader.apply(block);
+            if (dir == null) dir = new Directory(firstBlock, dirBlock.entries());
+
+            int base = dir.blockCount * dir.entriesPerBlock;
+            dir.append(block);
+            for (int i = 0; i < dirBlock.entries(); i++) {
+                DirBlock.Entry entry = dirBlock.entry(i);
+                if (entry.isEmpty()) dir.free.set(base + i);
+                else dir.names.put(entry.name(), base + i);
+            }
+
+            int next = fat.get(block);
+            if (next == Fat.FIM_DE_ARQUIVO || next <= 0) break;
+            block = next;
+        }
+        return dir;
+    }
+
+    /* posicao da entrada com esse nome, ou -1 */
+    int find(String name) {
+        Integer slot = names.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /* primeira posicao vazia, ou -1 se todos os blocos estiverem cheios */
+    int firstFree() {
+        int slot = free.nextSetBit(0);
+        return slot < 0 ? -1 : slot;
+    }
+
+    /* ultimo bloco da cadeia, onde um bloco novo deve ser encadeado */
+    int lastBlock() {
+        return blocks[blockCount - 1];
+    }
+
+    /* registra um bloco vazio novo no fim da cadeia */
+    void extend(int block) {
+        int base = blockCount * entriesPerBlock;
+        append(block);
+        free.set(base, base + entriesPerBlock);
+    }
+
+    void added(String name, int slot) {
+        names.put(name, slot);
+        free.clear(slot);
+    }
+
+    void removed(String name) {
+        Integer slot = names.remove(name);
+        if (slot != null) free.set(slot);
+    }
+
+    boolean isEmpty() {
+        return names.isEmpty();
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    /* bloco onde fica a posicao */
+    int blockOf(int slot) {
+        return blocks[slot / entriesPerBlock];
+    }
+
+    /* numero da entrada dentro do bloco onde fica a posicao */
+    int indexOf(int slot) {
+        return slot % entriesPerBlock;
+    }
+
+    /* copia dos blocos da cadeia, em ordem */
+    int[] blocks() {
+        int[] copy = new int[blockCount];
+        System.arraycopy(blocks, 0, copy, 0, blockCount);
+        return copy;
+    }
+
+    /* nomes das entradas ocupadas, na ordem em que aparecem no disco */
+    ArrayList<String> names() {
+        String[] bySlot = new String[blockCount * entriesPerBlock];
+        names.forEach((name, slot) -> bySlot[slot] = name);
+
+        ArrayList<String> list = new ArrayList<>(names.size());
+        for (String name : bySlot) {
+            if (name != null) list.add(name);
+        }
+        return list;
+    }
+
+    private void append(int block) {
+        if (blockCount == blocks.length) {
+            int[] bigger = new int[blocks.length * 2];
+            System.arraycopy(blocks, 0, bigger, 0, blockCount);
+            blocks = bigger;
+        }
+        blocks[blockCount++] = block;
+    }
+}
@@ -0,0 +1,311 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+//mapa de blocos de um arquivo em modo extent: o first_block da entrada aponta para uma lista de sequencias
+//(inicio, quantidade de blocos), entao achar o bloco de uma posicao e uma busca binaria, ler ou escrever uma
+//sequencia inteira e uma unica transferencia, e apagar o arquivo nao precisa seguir nenhuma cadeia
+//cada bloco da lista tem [quantidade][inicio, tamanho]...; se a lista nao cabe em um bloco, os blocos dela sao
+//encadeados na FAT. Os blocos de dados ficam na FAT como fim de arquivo, so para constar como usados
+//a lista e metadado: ela e lida e gravada como os blocos de diretorio (pelo journal, se o volume tiver),
+//em pedacos de 32 bytes, e so os pedacos que mudaram sao gravados
+public class ExtentList implements BlockMap {
+    private static final int HEADER = 4;
+    private static final int EXTENT_SIZE = 8;
+    private static final int SLOT = DirBlock.ENTRY_SIZE;
+
+    //onde os blocos da lista sao lidos e gravados
+    interface Metadata {
+        /* conteudo atual do bloco */
+        ByteBuffer read(int block);
+
+        /* zera um bloco que passa a ser da lista */
+        void zero(int block);
+
+        /* grava os 32 bytes do pedaco index do bloco */
+        void write(int block, int index, ByteBuffer slot);
+    }
+
+    private final Fat fat;
+    private final Metadata metadata;
+    private final int blockSize;
+    private final int perBlock;
+
+    /* blocos da lista, na ordem da cadeia, e o conteudo de cada um como esta no volume */
+    private final ArrayList<Integer> listBlocks = new ArrayList<>();
+    private final ArrayList<byte[]> images = new ArrayList<>();
+
+    /* extents em ordem: bloco inicial no volume, tamanho em blocos e posicao (em blocos) dentro do arquivo */
+    private int[] starts = new int[4];
+    private int[] lengths = new int[4];
+    private int[] offsets = new int[4];
+    private int count;
+    private int blocks;
+    private boolean changed;
+    /* arquivo em modo dedup: os blocos de dados podem ser de varios arquivos, entao sao soltos pela tabela */
+    private DedupTable dedup;
+
+    private ExtentList(Fat fat, Metadata metadata, int blockSize) {
+        this.fat = fat;
+        this.metadata = metadata;
+        this.blockSize = blockSize;
+        this.perBlock = (blockSize - HEADER) / EXTENT_SIZE;
+    }
+
+    /* le a lista que comeca em firstBlock */
+    static ExtentList load(Fat fat, Metadata metadata, int blockSize, int firstBlock) throws IOException {
+        ExtentList list = new ExtentList(fat, metadata, blockSize);
+        int block = firstBlock;
+        for (int hops = 0; hops < fat.length(); hops++) {
+            byte[] image = new byte[blockSize];
+            metadata.read(block).get(0, image);
+            list.listBlocks.add(block);
+            list.images.add(image);
+
+            ByteBuffer bytes = ByteBuffer.wrap(image);
+            int n = bytes.getInt();
+            if (n < 0 || n > list.perBlock) throw new IOException("Lista de extents corrompida no bloco " + block);
+            for (int i = 0; i < n; i++) {
+                list.add(bytes.getInt(), bytes.getInt());
+            }
+
+            int next = fat.get(block);
+            if (!list.isDataBlock(next)) break;
+            block = next;
+        }
+        list.changed = false;
+        return list;
+    }
+
+    /* cria uma lista vazia no bloco firstBlock, ja reservado na FAT */
+    static ExtentList create(Fat fat, Metadata metadata, int blockSize, int firstBlock) {
+        metadata.zero(firstBlock);
+        ExtentList list = new ExtentList(fat, metadata, blockSize);
+        list.listBlocks.add(firstBlock);
+        list.images.add(new byte[blockSize]);
+        return list;
+    }
+
+    /* os blocos de dados passam a ser soltos pela tabela de dedup, e nao direto na FAT */
+    void useDedup(DedupTable dedup) {
+        this.dedup = dedup;
+    }
+
+    boolean isDedup() {
+        return dedup != null;
+    }
+
+    @Override
+    public int blocks() {
+        return blocks;
+    }
+
+    @Override
+    public int block(int i) {
+        int e = extentOf(i);
+        return starts[e] + (i - offsets[e]);
+    }
+
+    @Override
+    public int run(int i, int max) {
+        int e = extentOf(i);
+        return Math.min(max, lengths[e] - (i - offsets[e]));
+    }
+
+    /* os blocos novos sao reservados de uma vez, de preferencia em uma unica sequencia */
+    @Override
+    public void grow(int n) throws IOException {
+        if (n <= blocks) return;
+
+        int[] novos = fat.allocate(n - blocks);
+        if (novos == null) throw new IOException("A FAT está cheia");
+
+        //blocos seguidos no volume viram um unico extent
+        int start = 0;
+        for (int i = 1; i <= novos.length; i++) {
+            if (i == novos.length || novos[i] != novos[i - 1] + 1) {
+                int length = i - start;
+                fat.setRange(novos[start], length, Fat.FIM_DE_ARQUIVO);
+                add(novos[start], length);
+                start = i;
+            }
+        }
+    }
+
+    @Override
+    public void shrink(int n) {
+        if (n >= blocks) return;
+
+        while (count > 0 && offsets[count - 1] >= n) {
+            count--;
+            free(starts[count], lengths[count]);
+        }
+        if (count > 0) {
+            int e = count - 1;
+            int keep = n - offsets[e];
+            if (keep < lengths[e]) {
+                free(starts[e] + keep, lengths[e] - keep);
+                lengths[e] = keep;
+            }
+        }
+        blocks = n;
+        changed = true;
+    }
+
+    /* grava a lista nos blocos dela, encadeando ou liberando blocos se a quantidade de extents mudou */
+    @Override
+    public void store() throws IOException {
+        if (!changed) return;
+
+        int needed = Math.max(1, (count + perBlock - 1) / perBlock);
+        while (listBlocks.size() < needed) {
+            int novo = fat.allocate();
+            if (novo < 0) throw new IOException("A FAT está cheia");
+            fat.set(novo, Fat.FIM_DE_ARQUIVO);
+            fat.set(listBlocks.get(listBlocks.size() - 1), novo);
+            metadata.zero(novo);
+            listBlocks.add(novo);
+            images.add(new byte[blockSize]);
+        }
+        while (listBlocks.size() > needed) {
+            fat.set(listBlocks.remove(listBlocks.size() - 1), 0);
+            images.remove(images.size() - 1);
+        }
+        fat.set(listBlocks.get(needed - 1), Fat.FIM_DE_ARQUIVO);
+
+        for (int k = 0; k < needed; k++) {
+            int first = k * perBlock;
+            int n = Math.min(perBlock, count - first);
+            ByteBuffer bytes = ByteBuffer.allocate(blockSize);
+            bytes.putInt(n);
+            for (int e = first; e < first + n; e++) {
+                bytes.putInt(starts[e]).putInt(lengths[e]);
+            }
+            writeChanged(listBlocks.get(k), images.get(k), bytes.array());
+            images.set(k, bytes.array());
+        }
+        changed = false;
+    }
+
+    /* libera na FAT os blocos de dados e os blocos da lista, para apagar o arquivo */
+    void delete() {
+        for (int e = 0; e < count; e++) {
+            free(starts[e], lengths[e]);
+        }
+        for (int block : listBlocks) {
+            fat.set(block, 0);
+        }
+        count = 0;
+        blocks = 0;
+    }
+
+    /* marca no bitset os blocos de dados e os blocos da lista, sem alterar a FAT; em modo dedup so os da lista,
+       porque os de dados podem ser de outros arquivos e sao soltos por releaseData */
+    void collect(BitSet blocks) {
+        if (dedup == null) {
+            for (int e = 0; e < count; e++) {
+                blocks.set(starts[e], starts[e] + lengths[e]);
+            }
+        }
+        for (int block : listBlocks) {
+            blocks.set(block);
+        }
+    }
+
+    /* solta os blocos de dados pela tabela de dedup, sem alterar a lista */
+    void releaseData() {
+        for (int e = 0; e < count; e++) {
+            dedup.release(starts[e], lengths[e]);
+        }
+    }
+
+    /* faz o i-esimo bloco do arquivo ser block, sem alterar a FAT; i == blocks() acrescenta o bloco no fim */
+    void map(int i, int block) {
+        if (i == blocks) {
+            add(block, 1);
+            return;
+        }
+
+        //o extent que contem i vira ate tres: antes de i, o bloco novo e depois de i
+        int e = extentOf(i);
+        int before = i - offsets[e];
+        int after = lengths[e] - before - 1;
+        int start = starts[e];
+        int pieces = (before > 0 ? 1 : 0) + 1 + (after > 0 ? 1 : 0);
+        ensureCapacity(count + pieces - 1);
+        System.arraycopy(starts, e + 1, starts, e + pieces, count - e - 1);
+        System.arraycopy(lengths, e + 1, lengths, e + pieces, count - e - 1);
+        System.arraycopy(offsets, e + 1, offsets, e + pieces, count - e - 1);
+
+        int k = e;
+        if (before > 0) set(k++, start, before, offsets[e]);
+        set(k++, block, 1, i);
+        if (after > 0) set(k, start + before + 1, after, i + 1);
+        count += pieces - 1;
+        changed = true;
+    }
+
+    //libera uma sequencia de blocos de dados: direto na FAT, ou pela tabela em modo dedup
+    private void free(int start, int length) {
+        if (dedup != null) dedup.release(start, length);
+        else fat.setRange(start, length, 0);
+    }
+
+    private void set(int e, int start, int length, int offset) {
+        starts[e] = start;
+        lengths[e] = length;
+        offsets[e] = offset;
+    }
+
+    private void ensureCapacity(int n) {
+        if (n > starts.length) {
+            int capacity = Math.max(n, starts.length * 2);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+        }
+    }
+
+    //grava so os pedacos de 32 bytes que mudaram
+    private void writeChanged(int block, byte[] before, byte[] after) {
+        for (int offset = 0; offset < blockSize; offset += SLOT) {
+            if (!Arrays.equals(before, offset, offset + SLOT, after, offset, offset + SLOT)) {
+                metadata.write(block, offset / SLOT, ByteBuffer.wrap(after, offset, SLOT));
+            }
+        }
+    }
+
+    //acrescenta uma sequencia no fim do arquivo, juntando com o ultimo extent se ela continua ele
+    private void add(int start, int length) {
+        changed = true;
+        if (count > 0 && starts[count - 1] + lengths[count - 1] == start) {
+            lengths[count - 1] += length;
+            blocks += length;
+            return;
+        }
+
+        ensureCapacity(count + 1);
+        set(count++, start, length, blocks);
+        blocks += length;
+    }
+
+    //extent onde fica o i-esimo bloco do arquivo: o ultimo com offset <= i
+    private int extentOf(int i) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= i) low = mid;
+            else high = mid - 1;
+        }
+        return low;
+    }
+
+    private boolean isDataBlock(int block) {
+        return block > 0 && block < fat.length() && block != Fat.FIM_DE_ARQUIVO && block != Fat.RESERVADO;
+    }
+}
@@ -0,0 +1,234 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+//FAT em memoria: carregada do disco na montagem, em poucas leituras grandes
+//cada alteracao marca o bloco da FAT onde a entrada fica, e flush escreve so os blocos marcados
+//o mapa de blocos livres e montado a partir da FAT e atualizado a cada set, entao os dois nunca divergem
+//alterar e reservar sao secoes criticas curtas no monitor da FAT; get nao trava, porque quem segue uma cadeia
+//segura a trava do arquivo ou diretorio dono dela, a mesma que quem alterou a cadeia segurava
+//em memoria as entradas tem 32 bits; no disco tem 16 ou 32 bits, conforme o superbloco, e na FAT de 16 bits
+//os marcadores sao gravados como 0x7ffe e 0x7fff
+public class Fat {
+    /* marcadores das entradas da FAT */
+    static final int RESERVADO = 0x7ffffffe;
+    static final int FIM_DE_ARQUIVO = 0x7fffffff;
+    private static final short RESERVADO_16 = 0x7ffe;
+    private static final short FIM_DE_ARQUIVO_16 = 0x7fff;
+
+    /* blocos da FAT lidos de uma vez na montagem */
+    private static final int LOAD_BLOCKS = 256;
+
+    private final int[] entries;
+    private final int blockSize;
+    private final int width;
+    private final int entriesPerBlock;
+    /* primeiro bloco da FAT no volume */
+    private final int start;
+    private final int firstDataBlock;
+    private final FreeSpaceMap free;
+    private final Metrics metrics;
+
+    /* blocos da FAT (contados a partir de start) alterados desde o ultimo flush */
+    private final BitSet dirtyBlocks = new BitSet();
+    /* entradas alteradas desde o ultimo takeChanges, para o journal */
+    private final BitSet changed = new BitSet();
+    private int changedCount;
+    /* blocos liberados desde o ultimo takeFreed, para o journal revogar o que ele tem desses blocos */
+    private final BitSet freed = new BitSet();
+
+    public Fat(Superblock volume, Metrics metrics) {
+        this.metrics = metrics;
+        this.entries = new int[volume.blocks];
+        this.blockSize = volume.blockSize;
+        this.width = volume.fatWidth;
+        this.entriesPerBlock = blockSize / width;
+        this.start = volume.fatBlock;
+        this.firstDataBlock = volume.rootBlock + 1;
+        this.free = new FreeSpaceMap(volume.blocks);
+    }
+
+    /* le a FAT inteira, LOAD_BLOCKS blocos por leitura */
+    public synchronized void load(BlockDevice device) throws IOException {
+        int chunk = LOAD_BLOCKS * entriesPerBlock;
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(entries.length, chunk) * width);
+        for (int first = 0; first < entries.length; first += chunk) {
+            int count = Math.min(chunk, entries.length - first);
+            buffer.clear().limit(count * width);
+            device.read(buffer, position(first / entriesPerBlock));
+            buffer.flip();
+            for (int i = 0; i < count; i++) {
+                entries[first + i] = width == 2 ? decode(buffer.getShort()) : buffer.getInt();
+            }
+        }
+        dirtyBlocks.clear();
+        changed.clear();
+        changedCount = 0;
+        freed.clear();
+
+        //monta o mapa de blocos livres uma vez, na montagem
+        for (int i = firstDataBlock; i < entries.length; i++) {
+            if (entries[i] == 0) free.markFree(i);
+            else free.markUsed(i);
+        }
+    }
+
+    /* escreve no disco somente os blocos da FAT que mudaram, um write por bloco */
+    public synchronized void flush(BlockDevice device) throws IOException {
+        write(device, entries, dirtyBlocks);
+        dirtyBlocks.clear();
+        //sem journal, nao ha o que revogar
+        freed.clear();
+    }
+
+    /* marca a FAT inteira para o proximo flush, para um volume que acabou de ser formatado */
+    public synchronized void markAllDirty() {
+        dirtyBlocks.set(0, (entries.length + entriesPerBlock - 1) / entriesPerBlock);
+    }
+
+    /* escreve os blocos marcados de uma copia da FAT com o mesmo tamanho, no formato do disco */
+    void write(BlockDevice device, int[] source, BitSet blocks) throws IOException {
+        if (blocks.isEmpty()) return;
+        metrics.fatFlushes.increment();
+        metrics.fatBlocksWritten.add(blocks.cardinality());
+        ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+        for (int b = blocks.nextSetBit(0); b >= 0; b = blocks.nextSetBit(b + 1)) {
+            buffer.clear();
+            int first = b * entriesPerBlock;
+            int last = Math.min(source.length, first + entriesPerBlock);
+            for (int i = first; i < last; i++) {
+                if (width == 2) buffer.putShort((short) encode(source[i]));
+                else buffer.putInt(source[i]);
+            }
+            //o fim do ultimo bloco da FAT nao tem entradas
+            while (buffer.hasRemaining()) buffer.put((byte) 0);
+            buffer.flip();
+            device.write(buffer, position(b));
+        }
+    }
+
+    public int get(int block) {
+        return entries[block];
+    }
+
+    public synchronized void set(int block, int value) {
+        if (entries[block] != value) {
+            if (value == 0) freed.set(block);
+            entries[block] = value;
+            dirtyBlocks.set(block / entriesPerBlock);
+            if (!changed.get(block)) {
+                changed.set(block);
+                changedCount++;
+            }
+        }
+
+        if (block >= firstDataBlock) {
+            if (value == 0) free.markFree(block);
+            else free.markUsed(block);
+        }
+    }
+
+    /* muda length entradas seguidas, a partir de block, para o mesmo valor */
+    public synchronized void setRange(int block, int length, int value) {
+        for (int i = block; i < block + length; i++) {
+            set(i, value);
+        }
+    }
+
+    /* libera de uma vez todos os blocos marcados, para apagar uma arvore inteira */
+    public synchronized void clear(BitSet blocks) {
+        for (int b = blocks.nextSetBit(0); b >= 0; b = blocks.nextSetBit(b + 1)) {
+            set(b, 0);
+        }
+    }
+
+    /* reserva um bloco livre; quem chama deve marcar o bloco na FAT. Devolve -1 se a FAT estiver cheia */
+    public synchronized int allocate() {
+        return free.allocate();
+    }
+
+    /* reserva n blocos, de preferencia continuos; quem chama deve encadear os blocos na FAT. Devolve null se nao houver espaco */
+    public synchronized int[] allocate(int n) {
+        return free.allocate(n);
+    }
+
+    /* devolve ao mapa de livres um bloco reservado que acabou nao sendo usado na FAT */
+    public synchronized void release(int block) {
+        if (block >= firstDataBlock && entries[block] == 0) free.markFree(block);
+    }
+
+    /* entradas alteradas desde a ultima chamada, como pares (entrada, valor atual) */
+    public synchronized int[] takeChanges() {
+        int[] pairs = new int[changed.cardinality() * 2];
+        int i = 0;
+        for (int block = changed.nextSetBit(0); block >= 0; block = changed.nextSetBit(block + 1)) {
+            pairs[i++] = block;
+            pairs[i++] = entries[block];
+        }
+        changed.clear();
+        changedCount = 0;
+        return pairs;
+    }
+
+    /* quantas entradas o proximo takeChanges vai devolver */
+    public synchronized int pendingChanges() {
+        return changedCount;
+    }
+
+    /* blocos liberados desde a ultima chamada */
+    public synchronized int[] takeFreed() {
+        int[] blocks = freed.stream().toArray();
+        freed.clear();
+        return blocks;
+    }
+
+    /* o bloco voltou a ser de metadados depois de liberado: o que o journal tem dele nao deve ser revogado */
+    public synchronized void reused(int block) {
+        freed.clear(block);
+    }
+
+    /* copia de todas as entradas */
+    public synchronized int[] snapshot() {
+        return entries.clone();
+    }
+
+    /* bloco da FAT (contado a partir do inicio dela) onde fica a entrada */
+    int blockOf(int entry) {
+        return entry / entriesPerBlock;
+    }
+
+    /* valor da entrada como ele e gravado no disco */
+    int encode(int value) {
+        if (width == 4) return value;
+        if (value == RESERVADO) return RESERVADO_16;
+        if (value == FIM_DE_ARQUIVO) return FIM_DE_ARQUIVO_16;
+        return value;
+    }
+
+    /* valor da entrada como ele fica em memoria, a partir do que esta no disco */
+    int decode(int value) {
+        if (width == 4) return value;
+        if (value == RESERVADO_16) return RESERVADO;
+        if (value == FIM_DE_ARQUIVO_16) return FIM_DE_ARQUIVO;
+        return value & 0xffff;
+    }
+
+    public synchronized int freeBlocks() {
+        return free.freeCount();
+    }
+
+    public int length() {
+        return entries.length;
+    }
+
+    public synchronized boolean isDirty() {
+        return !dirtyBlocks.isEmpty();
+    }
+
+    //posicao no volume do bloco b da FAT
+    private long position(int b) {
+        return (long) (start + b) * blockSize;
+    }
+}
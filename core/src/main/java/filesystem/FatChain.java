@@ -0,0 +1,90 @@
+package filesystem;
+
+import java.io.IOException;
+
+//mapa de blocos de um arquivo guardado como cadeia na FAT, a partir do first_block
+//a cadeia e lida uma vez e guardada como um array de blocos, entao achar o bloco de uma posicao e O(1);
+//toda alteracao vai direto para a FAT em memoria, que e gravada no proximo commit
+public class FatChain implements BlockMap {
+    private final Fat fat;
+
+    /* blocos do arquivo na ordem da cadeia */
+    private int[] chain = new int[8];
+    private int chainLength;
+
+    private FatChain(Fat fat) {
+        this.fat = fat;
+    }
+
+    /* le a cadeia que comeca em firstBlock */
+    static FatChain load(Fat fat, int firstBlock) throws IOException {
+        FatChain chain = new FatChain(fat);
+        int block = firstBlock;
+        for (int hops = 0; chain.isDataBlock(block) && hops < fat.length(); hops++) {
+            chain.add(block);
+            block = fat.get(block);
+        }
+        if (chain.chainLength == 0) throw new IOException("O arquivo não tem nenhum bloco");
+        return chain;
+    }
+
+    @Override
+    public int blocks() {
+        return chainLength;
+    }
+
+    @Override
+    public int block(int i) {
+        return chain[i];
+    }
+
+    @Override
+    public int run(int i, int max) {
+        int length = 1;
+        while (length < max && i + length < chainLength && chain[i + length] == chain[i] + length) length++;
+        return length;
+    }
+
+    @Override
+    public void grow(int n) throws IOException {
+        if (n <= chainLength) return;
+
+        int[] novos = fat.allocate(n - chainLength);
+        if (novos == null) throw new IOException("A FAT está cheia");
+
+        for (int novo : novos) {
+            fat.set(novo, Fat.FIM_DE_ARQUIVO);
+            fat.set(chain[chainLength - 1], novo);
+            add(novo);
+        }
+    }
+
+    /* o arquivo sempre fica com pelo menos o primeiro bloco, que e o first_block da entrada */
+    @Override
+    public void shrink(int n) {
+        int keep = Math.max(1, n);
+        for (int i = keep; i < chainLength; i++) {
+            fat.set(chain[i], 0);
+        }
+        chainLength = Math.min(chainLength, keep);
+        fat.set(chain[chainLength - 1], Fat.FIM_DE_ARQUIVO);
+    }
+
+    @Override
+    public void store() {
+        //a cadeia ja esta na FAT
+    }
+
+    private void add(int block) {
+        if (chainLength == chain.length) {
+            int[] bigger = new int[chain.length * 2];
+            System.arraycopy(chain, 0, bigger, 0, chainLength);
+            chain = bigger;
+        }
+        chain[chainLength++] = block;
+    }
+
+    private boolean isDataBlock(int block) {
+        return block > 0 && block < fat.length() && block != Fat.FIM_DE_ARQUIVO && block != Fat.RESERVADO;
+    }
+}
@@ -0,0 +1,76 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+//dispositivo de blocos sobre um unico FileChannel aberto durante toda a execucao
+//todas as leituras e escritas sao posicionais, entao nao ha seek nem reabertura do arquivo
+public class FileChannelBlockDevice implements BlockDevice {
+    private final FileChannel channel;
+    private final int blockSize;
+
+    public FileChannelBlockDevice(String path, int blockSize) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public int blockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void readBlock(int block, byte[] record) throws IOException {
+        read(ByteBuffer.wrap(record, 0, blockSize), (long) block * blockSize);
+    }
+
+    @Override
+    public void writeBlock(int block, byte[] record) throws IOException {
+        write(ByteBuffer.wrap(record, 0, blockSize), (long) block * blockSize);
+    }
+
+    @Override
+    public void read(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int lidos = channel.read(dst, position);
+
+            //depois do fim do arquivo o volume e lido como zeros
+            if (lidos < 0) {
+                while (dst.hasRemaining()) {
+                    dst.put((byte) 0);
+                }
+                return;
+            }
+            position += lidos;
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining()) {
+            position += channel.write(src, position);
+        }
+    }
+
+    /* o arquivo e esvaziado e aumentado ate size sem escrever nada no meio (arquivo esparso), e buracos sao lidos como zeros */
+    @Override
+    public boolean erase(long size) throws IOException {
+        channel.truncate(0);
+        channel.write(ByteBuffer.allocate(1), size - 1);
+        return true;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,238 @@
+package filesystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+//acesso aleatorio a um arquivo aberto: leitura e escrita em qualquer posicao, truncate e close
+//os blocos do arquivo vem de um BlockMap (cadeia da FAT ou lista de extents), entao achar o bloco de uma posicao
+//nao segue nenhuma cadeia; blocos seguidos no volume sao lidos e escritos com uma unica transferencia
+//escrever no meio do arquivo altera so os blocos tocados; o size vai para a entrada de diretorio no close
+//quem abre segura a trava do arquivo ate o close (de leitura ou exclusiva), entao os blocos nao mudam por baixo;
+//o handle deve ser fechado pela mesma thread que abriu
+public class FileHandle implements Closeable {
+    private final BlockDevice device;
+    private final DirEntry entry;
+    private final BlockMap blocks;
+    private final boolean writable;
+    private final Consumer<DirEntry> commit;
+    private final Runnable release;
+    private final int blockSize;
+
+    private long size;
+    private boolean changed;
+    private boolean closed;
+
+    /* commit recebe a entrada com o size final para ser gravada no diretorio; release e chamado por ultimo no close */
+    public FileHandle(BlockDevice device, DirEntry entry, BlockMap blocks, boolean writable, Consumer<DirEntry> commit, Runnable release) {
+        this.device = device;
+        this.entry = entry;
+        this.blocks = blocks;
+        this.writable = writable;
+        this.commit = commit;
+        this.release = release;
+        this.blockSize = device.blockSize();
+        this.size = Math.max(0, entry.size);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /* le a partir de position ate encher dst ou chegar no fim do arquivo; devolve os bytes lidos ou -1 no fim */
+    public int read(ByteBuffer dst, long position) throws IOException {
+        checkOpen();
+        checkPosition(position);
+        if (position >= size) return -1;
+
+        int total = (int) Math.min(dst.remaining(), size - position);
+        ByteBuffer part = dst.duplicate();
+        part.limit(part.position() + total);
+        readBlocks(part, position);
+        dst.position(dst.position() + total);
+        return total;
+    }
+
+    /* escreve todo o src a partir de position, aumentando o arquivo se precisar; devolve os bytes escritos */
+    public int write(ByteBuffer src, long position) throws IOException {
+        checkWritable();
+        checkPosition(position);
+        int total = src.remaining();
+        long end = position + total;
+        if (end > Integer.MAX_VALUE) throw new IOException("Arquivo maior que o tamanho máximo");
+
+        ensureBlocks(end);
+        //o espaco entre o fim atual e o inicio da escrita tem que ser lido como zeros
+        if (position > size) zero(size, position);
+        writeBlocks(src, position);
+
+        if (end > size) resize(end);
+        return total;
+    }
+
+    /* muda o tamanho do arquivo: diminuir libera os blocos que sobram, aumentar completa com zeros */
+    public void truncate(long newSize) throws IOException {
+        checkWritable();
+        if (newSize < 0 || newSize > Integer.MAX_VALUE) throw new IOException("Tamanho inválido: " + newSize);
+
+        if (newSize > size) {
+            ensureBlocks(newSize);
+            zero(size, newSize);
+        } else {
+            releaseBlocksAfter(newSize);
+        }
+
+        if (newSize != size) resize(newSize);
+    }
+
+    /* grava o mapa de blocos e o novo size na entrada de diretorio, se eles mudaram */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        try {
+            //o mapa pode ter mudado sem o size mudar (um bloco trocado no meio do arquivo); sem mudanca, store nao grava nada
+            blocks.store();
+            if (changed) {
+                entry.size = (int) size;
+                commit.accept(entry);
+            }
+        } finally {
+            release.run();
+        }
+    }
+
+    /* leitura sequencial desde o inicio; fechar a leitura fecha o handle */
+    public InputStream asInputStream() {
+        return new InputStream() {
+            private long next;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int lidos = FileHandle.this.read(ByteBuffer.wrap(b, off, len), next);
+                if (lidos > 0) next += lidos;
+                return lidos;
+            }
+
+            @Override
+            public void close() throws IOException {
+                FileHandle.this.close();
+            }
+        };
+    }
+
+    /* escrita sequencial a partir de position; fechar a escrita fecha o handle */
+    public OutputStream asOutputStream(long position) {
+        return new OutputStream() {
+            private long next = position;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                next += FileHandle.this.write(ByteBuffer.wrap(b, off, len), next);
+            }
+
+            @Override
+            public void close() throws IOException {
+                FileHandle.this.close();
+            }
+        };
+    }
+
+    //le dst.remaining() bytes dos blocos do arquivo a partir de position, sem olhar o size, em sequencias de blocos
+    void readBlocks(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int length = runBytes(position, dst.remaining());
+
+            ByteBuffer part = dst.duplicate();
+            part.limit(part.position() + length);
+            device.read(part, volumePosition(position));
+            dst.position(dst.position() + length);
+
+            position += length;
+        }
+    }
+
+    //escreve src nos blocos do arquivo a partir de position, reservando os blocos que faltarem; o size nao muda
+    void writeBlocks(ByteBuffer src, long position) throws IOException {
+        ensureBlocks(position + src.remaining());
+        while (src.hasRemaining()) {
+            int length = runBytes(position, src.remaining());
+
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + length);
+            device.write(part, volumePosition(position));
+            src.position(src.position() + length);
+
+            position += length;
+        }
+    }
+
+    //libera os blocos depois dos primeiros bytes bytes do arquivo
+    void releaseBlocksAfter(long bytes) {
+        blocks.shrink((int) ((bytes + blockSize - 1) / blockSize));
+    }
+
+    //muda o size que vai para a entrada de diretorio no close
+    void resize(long newSize) {
+        size = newSize;
+        changed = true;
+    }
+
+    //posicao no volume onde fica a posicao do arquivo
+    private long volumePosition(long position) {
+        return (long) blocks.block((int) (position / blockSize)) * blockSize + position % blockSize;
+    }
+
+    //quantos dos length bytes a partir da posicao estao em blocos seguidos no volume
+    private int runBytes(long position, int length) {
+        int offset = (int) (position % blockSize);
+        int wanted = (int) (((long) offset + length + blockSize - 1) / blockSize);
+        long run = (long) blocks.run((int) (position / blockSize), wanted) * blockSize - offset;
+        return (int) Math.min(length, run);
+    }
+
+    //garante que o arquivo tem blocos para guardar end bytes; os blocos novos nao sao zerados, porque o que fica
+    //depois do size nunca e lido e e zerado antes do size passar por ele
+    void ensureBlocks(long end) throws IOException {
+        int needed = (int) ((end + blockSize - 1) / blockSize);
+        blocks.grow(needed);
+    }
+
+    //zera o trecho [from, to) do arquivo, que pode ter sobras de conteudo antigo, ate 1 MB por escrita
+    private void zero(long from, long to) throws IOException {
+        while (from < to) {
+            int length = (int) Math.min(to - from, 1 << 20);
+            writeBlocks(ByteBuffer.allocate(length), from);
+            from += length;
+        }
+    }
+
+    //uma posicao negativa cairia nos blocos antes do primeiro bloco do arquivo
+    static void checkPosition(long position) throws IOException {
+        if (position < 0) throw new IOException("Posição inválida: " + position);
+    }
+
+    void checkOpen() throws IOException {
+        if (closed) throw new IOException("Arquivo já foi fechado");
+    }
+
+    void checkWritable() throws IOException {
+        checkOpen();
+        if (!writable) throw new IOException("Arquivo aberto somente para leitura");
+    }
+}
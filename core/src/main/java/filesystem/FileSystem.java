@@ -0,0 +1,1642 @@
+package filesystem;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+//sistema de arquivos sobre um BlockDevice; cada instancia monta um volume e pode ser usada por varias threads
+//diretorios e arquivos tem uma trava de leitura/escrita cada, e a FAT so trava para alterar e reservar,
+//entao leituras e escritas em arquivos e diretorios diferentes andam em paralelo; init trava o volume inteiro
+public class FileSystem implements Closeable {
+    private static final String VOLUME_FILE = "filesystem.dat";
+    private static final int DIR_ENTRY_SIZE = 32; //32 bytes
+
+    private static final int FAT = Fat.RESERVADO;
+    private static final int FIM_DE_ARQUIVO = Fat.FIM_DE_ARQUIVO;
+    private static final int ARQUIVO = 0x01;
+    private static final int DIRETORIO = 0x02;
+    private static final int EXTENTS = DirEntry.EXTENTS;
+    private static final int COMPRIMIDO = DirEntry.COMPRIMIDO;
+    private static final int DEDUP = DirEntry.DEDUP;
+
+    private static final int DEFAULT_CACHE_BLOCKS = 64;
+    /* no batch o cache tem o volume inteiro, ate este limite */
+    private static final long BATCH_CACHE_BYTES = 256L << 20;
+    /* group commit do modo batch: a cada tantos comandos ou milissegundos */
+    private static final int DEFAULT_COMMIT_EVERY = 1000;
+    private static final long DEFAULT_COMMIT_MILLIS = 1000;
+    /* quantos blocos a leitura de um arquivo pede antes de precisar deles */
+    private static final int READAHEAD_BLOCKS = 8;
+    /* maior transferencia da leitura de um arquivo em modo extent */
+    private static final int TRANSFER_BYTES = 1 << 20;
+    private static final int DIRECTORY_INDEXES = 64;
+
+    //a geometria, a FAT, o dispositivo e o resolver de caminhos so sao trocados pelo init, com o volume travado
+    //de forma exclusiva; as operacoes seguram a trava de leitura do volume, entao sempre veem os valores atuais
+    /* geometria do volume montado */
+    private Superblock superblock;
+    /* FAT data structure */
+    private Fat fat;
+    /* dispositivo onde fica o volume */
+    private BlockDevice device;
+    /* cache de blocos na frente do dispositivo (null se desligado) */
+    private BlockCache cache;
+    /* contadores de E/S e latencia dos comandos, desde a montagem */
+    private final Metrics metrics = new Metrics();
+    /* abre o dispositivo de novo quando o init muda a geometria; null se o dispositivo nao pode ser trocado */
+    private final DeviceFactory devices;
+    /* indices de nomes dos diretorios usados recentemente, pelo primeiro bloco do diretorio */
+    private final LinkedHashMap<Integer, Directory> directories = new LinkedHashMap<>(DIRECTORY_INDEXES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Directory> eldest) {
+            return size() > DIRECTORY_INDEXES;
+        }
+    };
+    /* travas dos diretorios e arquivos; o volume so e travado de forma exclusiva pelo init */
+    private final LockTable locks = new LockTable();
+    private final ReentrantReadWriteLock volume = new ReentrantReadWriteLock();
+    /* operacoes que alteram metadados seguram a trava de leitura e o commit a de escrita,
+       entao uma transacao do journal nunca leva metade de uma operacao */
+    private final ReentrantReadWriteLock operations = new ReentrantReadWriteLock();
+    /* journal de metadados; null em volumes formatados sem ele */
+    private volatile Journal journal;
+    /* resolucao de caminhos com cache de entradas de diretorio */
+    private PathResolver resolver;
+    /* arquivos novos sao criados em modo extent */
+    private volatile boolean extentFiles;
+    /* arquivos novos sao criados comprimidos */
+    private volatile boolean compressedFiles;
+    /* arquivos novos sao criados em modo dedup */
+    private volatile boolean dedupFiles;
+    /* tabela de dedup do volume, lida na primeira vez que um arquivo em modo dedup é usado */
+    private DedupTable dedup;
+    /* blocos das listas de extents sao metadados, lidos e gravados como os blocos de diretorio */
+    private final ExtentList.Metadata metadata = new ExtentList.Metadata() {
+        @Override
+        public ByteBuffer read(int block) {
+            return readMetadataBlock(block);
+        }
+
+        @Override
+        public void zero(int block) {
+            writeEmptyDirBlock(block);
+        }
+
+        @Override
+        public void write(int block, int index, ByteBuffer slot) {
+            writeMetadata(block, index, slot);
+        }
+    };
+
+    /* monta o volume do dispositivo: superbloco, FAT em poucas leituras grandes e o que estiver no journal */
+    public FileSystem(BlockDevice device) throws IOException {
+        this(device, null);
+    }
+
+    /* devices abre o volume de novo quando o init muda o tamanho do bloco ou a quantidade de blocos */
+    public FileSystem(BlockDevice device, DeviceFactory devices) throws IOException {
+        this.devices = devices;
+        mount(device);
+    }
+
+    //abre o dispositivo de um volume com a geometria pedida
+    public interface DeviceFactory {
+        BlockDevice open(Superblock volume) throws IOException;
+    }
+
+    //le o superbloco e a FAT do dispositivo e refaz o que estiver no journal
+    private void mount(BlockDevice device) throws IOException {
+        Superblock volume = Superblock.read(device);
+        if (volume.blockSize != device.blockSize()) {
+            throw new IOException("O volume tem blocos de " + volume.blockSize + " bytes, mas o dispositivo foi aberto com blocos de " + device.blockSize());
+        }
+        use(volume, device);
+        fat.load(this.device);
+        journal = Journal.open(this.device, fat, volume.journalBlock);
+    }
+
+    //passa a usar a geometria e o dispositivo, com uma FAT vazia e sem nenhum caminho ou diretorio conhecido
+    private void use(Superblock volume, BlockDevice device) {
+        //o init pode devolver o mesmo dispositivo, que ja passa pelas metricas
+        BlockDevice disk = device instanceof MeteredBlockDevice ? ((MeteredBlockDevice) device).unwrap() : device;
+        this.superblock = volume;
+        this.device = new MeteredBlockDevice(disk, metrics);
+        this.cache = disk instanceof BlockCache ? (BlockCache) disk : null;
+        this.fat = new Fat(volume, metrics);
+        this.journal = null;
+        this.dedup = null;
+        this.resolver = new PathResolver(volume.rootBlock, this::directory, this::readDirBlock, locks::directory, 512);
+        synchronized (directories) {
+            directories.clear();
+        }
+    }
+
+
+    //------------------------METODOS DE MANIPULACAO DE MEMORIA--------------------------------
+
+    /* reads a data block from disk */
+    private byte[] readBlock(int block) {
+        byte[] record = new byte[superblock.blockSize];
+        try {
+            device.readBlock(block, record);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return record;
+    }
+
+    /* writes a data block to disk */
+    private void writeBlock(int block, byte[] record) {
+        try {
+            device.writeBlock(block, record);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /* writes the FAT to disk - somente os blocos da FAT que mudaram */
+    private void writeFat() {
+        try {
+            fat.flush(device);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /* reads a directory block - todas as entradas sao decodificadas do mesmo buffer */
+    private DirBlock readDirBlock(int block) {
+        return new DirBlock(readMetadataBlock(block), superblock.fatWidth);
+    }
+
+    /* le um bloco de metadados (diretorio ou lista de extents) somente para leitura */
+    private ByteBuffer readMetadataBlock(int block) {
+        //um bloco alterado desde o ultimo commit so existe no journal
+        Journal j = journal;
+        ByteBuffer pendente = j == null ? null : j.view(block);
+        if (pendente != null) return pendente;
+
+        try {
+            //no dispositivo mapeado a view e uma fatia do proprio mapeamento, sem copia do bloco
+            return device.blockView(block);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ByteBuffer.allocate(superblock.blockSize);
+        }
+    }
+
+    /* reads a directory entry from a directory */
+    private DirEntry readDirEntry(int block, int entry) {
+        return readDirBlock(block).entry(entry).toDirEntry();
+    }
+
+    /* writes a directory entry in a directory - altera somente os 32 bytes da entrada */
+    private void writeDirEntry(int block, int entry, DirEntry dir_entry) {
+        writeMetadata(block, entry, DirBlock.encode(dir_entry, superblock.fatWidth));
+    }
+
+    /* writes 32 bytes of a metadata block - pelo journal, se o volume tiver */
+    private void writeMetadata(int block, int entry, ByteBuffer bytes) {
+        try {
+            Journal j = journal;
+            if (j != null) j.writeDirEntry(block, entry, bytes);
+            else device.write(bytes, (long) block * superblock.blockSize + (long) entry * DIR_ENTRY_SIZE);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /* writes an empty directory block - pelo journal, se o volume tiver */
+    private void writeEmptyDirBlock(int block) {
+        Journal j = journal;
+        if (j == null) {
+            writeBlock(block, new byte[superblock.blockSize]);
+            return;
+        }
+        try {
+            j.zeroBlock(block);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    //------------------------METODO DE INIT--------------------------------
+
+    //init - inicializar o sistema de arquivos com as estruturas de dados, semelhante a formatar o sistema de arquivos virtual
+    //formata com a geometria do volume atual; um volume sem superbloco passa a ter um
+    public void init() throws FileSystemException {
+        init(null);
+    }
+
+    //init com blocos de blockSize bytes e blocks blocos; acima de 0x7ffd blocos a FAT passa a ter 32 bits
+    public void init(int blockSize, int blocks) throws FileSystemException {
+        init(Superblock.create(blockSize, blocks));
+    }
+
+    //espera as operacoes em andamento terminarem e nenhuma outra comeca ate o fim da formatacao
+    private void init(Superblock geometry) throws FileSystemException {
+        checkVolumeUpgrade();
+        Lock lock = volume.writeLock();
+        Lock commits = operations.writeLock();
+        lock.lock();
+        commits.lock();
+        try {
+            format(geometry != null ? geometry : Superblock.create(superblock.blockSize, superblock.blocks));
+        } finally {
+            commits.unlock();
+            lock.unlock();
+        }
+    }
+
+    private void format(Superblock volume) throws FileSystemException {
+        /* com outro tamanho de bloco ou de volume, o dispositivo é aberto de novo; os caminhos conhecidos deixam de valer */
+        use(volume, reopen(volume));
+
+        /* apaga o volume sem escrever os blocos de dados: eles sao sempre escritos inteiros quando sao alocados,
+           entao o que sobrou da formatacao anterior nunca é lido */
+        boolean zerado = false;
+        try {
+            zerado = device.erase(volume.bytes());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        /* reserva na FAT o superbloco (indice 0) e os blocos da propria FAT */
+        for (int i = 0; i < volume.rootBlock; i++) {
+            fat.set(i, FAT);
+        }
+
+        /* inicializa a entrada da root, logo depois da FAT, com 0x7fff para indicar que é o ROOT */
+        fat.set(volume.rootBlock, FIM_DE_ARQUIVO);
+
+        /* inicializa todos outros blocos da FAT com 0 */
+        for (int i = volume.rootBlock + 1; i < volume.blocks; i++) {
+            fat.set(i, 0);
+        }
+
+        /* reserva os 64 ultimos blocos para o journal */
+        for (int i = volume.journalBlock; i < volume.blocks; i++) {
+            fat.set(i, FAT);
+        }
+
+        /* escreve a FAT no disco, logo depois do superbloco, sem passar pelo journal: num volume zerado só os blocos
+           da FAT com entradas diferentes de 0, senão a FAT inteira */
+        if (!zerado) fat.markAllDirty();
+        writeFat();
+        fat.takeChanges();
+
+        /* cria um bloco LOCAL zerado */
+        byte[] data_block = new byte[volume.blockSize];
+
+        /* coloca esse bloco VAZIO na localização do ROOT, ou seja, escreve o root vazio no disco*/
+        writeBlock(volume.rootBlock, data_block);
+
+        /* grava a geometria no superbloco e cria o journal vazio; o que estava no journal anterior deixa de valer */
+        try {
+            volume.write(device);
+            journal = Journal.format(device, fat, volume.journalBlock);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //devolve o dispositivo para a geometria nova: o atual, se o tamanho do bloco e do volume nao mudaram
+    private BlockDevice reopen(Superblock volume) throws FileSystemException {
+        boolean sameBlocks = volume.blockSize == device.blockSize();
+        if (sameBlocks && (volume.blocks == superblock.blocks || devices == null)) return device;
+        if (devices == null) {
+            throw new FileSystemException("O dispositivo foi aberto com blocos de " + device.blockSize() + " bytes e não pode ser aberto de novo");
+        }
+
+        try {
+            device.close();
+            return devices.open(volume);
+        } catch (IOException e) {
+            throw new FileSystemException("Não foi possível abrir o volume: " + e.getMessage());
+        }
+    }
+
+
+    //------------------------METODOS GERAIS--------------------------------
+
+    //reserva uma entrada vazia (com valor 0) da FAT e devolve -1 se estiver cheia
+    //a busca é feita no mapa de blocos livres da FAT, a partir de onde a última alocação parou
+    private int firstFreeFATEntry() {
+        //-1 deve ser tratado na chamada do método, pois indica que não há lugar na FAT
+        return fat.allocate();
+    }
+
+    //devolve o indice de nomes do diretorio que começa em blocoAtual, montando ele na primeira vez
+    //quem chama segura a trava do diretorio, entao o indice montado fora do monitor nao muda enquanto é lido do disco
+    private Directory directory(int blocoAtual) {
+        synchronized (directories) {
+            Directory dir = directories.get(blocoAtual);
+            if (dir != null) return dir;
+        }
+
+        Directory dir = Directory.load(blocoAtual, fat, this::readDirBlock);
+        synchronized (directories) {
+            Directory outro = directories.putIfAbsent(blocoAtual, dir);
+            return outro != null ? outro : dir;
+        }
+    }
+
+    //descarta o indice de um diretorio removido, ou de um bloco que volta a ser usado como diretorio
+    private void forgetDirectory(int blocoAtual) {
+        synchronized (directories) {
+            directories.remove(blocoAtual);
+        }
+    }
+
+    //devolve a primeira entrada vazia (com valor 0) do diretorio
+    //se todos os blocos do diretorio estão cheios, encadeia um bloco novo nele; devolve -1 se a FAT estiver cheia
+    private int firstFreeDirEntry(Directory dir) {
+        int slot = dir.firstFree();
+        if (slot != -1) return slot;
+
+        int novo = firstFreeFATEntry();
+        //-1 deve ser tratado na chamada do método, pois indica que não há lugar na FAT
+        if (novo == -1) return -1;
+
+        //o bloco novo passa a ser o fim da cadeia do diretorio
+        fat.set(novo, FIM_DE_ARQUIVO);
+        fat.set(dir.lastBlock(), novo);
+
+        //cria um bloco completamente VAZIO para as novas entradas
+        writeEmptyDirBlock(novo);
+
+        dir.extend(novo);
+        return dir.firstFree();
+    }
+
+    //confere se uma entrada existe no diretorio
+    private boolean doesEntryExists(Directory dir, String path) {
+        return dir.find(path) != -1;
+    }
+
+    // verifica se o arquivo está em modo extent
+    private boolean isExtentFile(DirEntry entry) {
+        return (entry.attributes & EXTENTS) != 0;
+    }
+
+    // verifica se o conteudo do arquivo está comprimido
+    private boolean isCompressed(DirEntry entry) {
+        return (entry.attributes & COMPRIMIDO) != 0;
+    }
+
+    // verifica se o arquivo está em modo dedup (e entao também em modo extent)
+    private boolean isDedup(DirEntry entry) {
+        return (entry.attributes & DEDUP) != 0;
+    }
+
+    //tabela de dedup do volume; volumes sem superbloco nao tem onde guardar o inicio dela
+    private synchronized DedupTable dedupTable() throws IOException {
+        if (dedup == null) {
+            if (superblock.legacy) throw new IOException("Volumes sem superbloco não suportam dedup; formate com init");
+            dedup = DedupTable.load(fat, metadata, device);
+        }
+        return dedup;
+    }
+
+    //arquivos em modo extent ou comprimidos sao lidos e escritos so pelo FileHandle, e nao pelos streams da cadeia da FAT
+    private boolean usesHandle(DirEntry entry) {
+        return (entry.attributes & (EXTENTS | COMPRIMIDO)) != 0;
+    }
+
+    //mapa de blocos do arquivo: a lista de extents ou a cadeia da FAT
+    private BlockMap blockMap(DirEntry entry) throws IOException {
+        if (isExtentFile(entry)) return extents(entry);
+        return FatChain.load(fat, entry.first_block);
+    }
+
+    //lista de extents do arquivo, que em modo dedup solta os blocos de dados pela tabela de dedup
+    private ExtentList extents(DirEntry entry) throws IOException {
+        ExtentList list = ExtentList.load(fat, metadata, superblock.blockSize, entry.first_block);
+        if (isDedup(entry)) list.useDedup(dedupTable());
+        return list;
+    }
+
+    //acesso aleatorio a um arquivo ja travado; o size vai para a entrada de diretorio no close
+    private FileHandle openHandle(Dentry dentry, boolean writable, Runnable release) throws IOException {
+        return handle(dentry.entry, blockMap(dentry.entry), writable, e -> writeDirEntry(dentry.parentBlock, dentry.index, e), release);
+    }
+
+    //handle do arquivo sobre os blocos dele, que descomprime e comprime o conteudo se o arquivo for comprimido
+    private FileHandle handle(DirEntry entry, BlockMap blocks, boolean writable, Consumer<DirEntry> commit, Runnable release) throws IOException {
+        if (isCompressed(entry)) return new CompressedFileHandle(device, entry, blocks, writable, commit, release);
+        if (isDedup(entry)) return new DedupFileHandle(device, entry, (ExtentList) blocks, dedupTable(), writable, commit, release);
+        return new FileHandle(device, entry, blocks, writable, commit, release);
+    }
+
+    //arquivos criados daqui em diante ficam em modo extent (true) ou com a cadeia na FAT (false)
+    public void setExtentFiles(boolean extentFiles) {
+        this.extentFiles = extentFiles;
+    }
+
+    //arquivos criados daqui em diante ficam em modo dedup (true), com blocos iguais gravados uma vez so;
+    //arquivos comprimidos nao usam dedup
+    public void setDedupFiles(boolean dedupFiles) {
+        this.dedupFiles = dedupFiles;
+    }
+
+    //arquivos criados daqui em diante ficam comprimidos (true) ou com o conteudo como foi escrito (false)
+    public void setCompressedFiles(boolean compressedFiles) {
+        this.compressedFiles = compressedFiles;
+    }
+
+    // verifica se é um arquivo de diretórios ou não
+    private boolean isDirectory(DirEntry entry) {
+        if (entry.attributes == 2) {
+            return true;
+        }
+        else return false;
+    }
+
+
+    //------------------------METODOS DE CAMINHO--------------------------------
+
+    //resolve o caminho e trava a entrada encontrada, para leitura ou de forma exclusiva
+    //a entrada é conferida no diretorio pai, com a trava dele, entao um unlink no meio da resolucao é percebido;
+    //a trava da entrada só é tentada com tryLock enquanto a do pai está presa - se outra thread estiver com ela,
+    //as duas sao soltas e a espera acontece sem segurar nada, o que evita deadlock entre diretorios
+    private Locked acquire(String path, boolean exclusive) throws FileSystemException {
+        Lock volumeLock = volume.readLock();
+        volumeLock.lock();
+        boolean ok = false;
+        try {
+            while (true) {
+                Dentry dentry = resolver.resolve(path);
+                if (!dentry.exists()) {
+                    ok = true;
+                    return new Locked(dentry, volumeLock, null, null);
+                }
+
+                boolean directory = isDirectory(dentry.entry);
+                int firstBlock = dentry.entry.first_block;
+                Runnable forget = () -> forgetEntryLock(directory, firstBlock);
+                ReentrantReadWriteLock entryLock = entryLock(directory, firstBlock);
+                boolean held = false;
+                try {
+                    checkUpgrade(entryLock, exclusive, dentry.path);
+                    Lock lock = exclusive ? entryLock.writeLock() : entryLock.readLock();
+                    if (dentry.isRoot()) {
+                        lock.lock();
+                        held = ok = true;
+                        return new Locked(dentry, volumeLock, lock, forget);
+                    }
+
+                    boolean current = false;
+                    ReentrantReadWriteLock parentLock = locks.directory(dentry.parentDir);
+                    Lock parent = parentLock.readLock();
+                    parent.lock();
+                    try {
+                        //o pai ou a propria entrada podem ter sido excluidos por um unlink -r enquanto a thread esperava
+                        DirBlock.Entry atual = locks.isCurrent(dentry.parentDir, parentLock) ? currentEntry(dentry) : null;
+                        current = atual != null && (!directory || locks.isCurrent(firstBlock, entryLock));
+                        if (current && lock.tryLock()) {
+                            //a copia no cache de caminhos pode ter um size antigo; com a trava, o do disco é o certo
+                            if (dentry.entry.size != atual.size()) dentry.entry.size = atual.size();
+                            held = ok = true;
+                            return new Locked(dentry, volumeLock, lock, forget);
+                        }
+                    } finally {
+                        parent.unlock();
+                    }
+
+                    if (!current) {
+                        resolver.invalidate(dentry.path);
+                    } else {
+                        //outra thread está com a entrada: espera por ela e resolve de novo
+                        lock.lock();
+                        lock.unlock();
+                    }
+                } finally {
+                    if (!held) forget.run();
+                }
+            }
+        } finally {
+            if (!ok) volumeLock.unlock();
+        }
+    }
+
+    //devolve a entrada no bloco do diretorio pai se ela ainda é a mesma da Dentry, ou null se foi removida ou trocada
+    private DirBlock.Entry currentEntry(Dentry dentry) {
+        Directory dir = directory(dentry.parentDir);
+        int slot = dir.find(PathResolver.nameOf(dentry.path));
+        if (slot < 0 || dir.blockOf(slot) != dentry.parentBlock || dir.indexOf(slot) != dentry.index) return null;
+
+        DirBlock.Entry entry = readDirBlock(dentry.parentBlock).entry(dentry.index);
+        return entry.firstBlock() == dentry.entry.first_block ? entry : null;
+    }
+
+    //trava de um diretorio ou de um arquivo, pelo primeiro bloco; a de um arquivo é devolvida com forgetEntryLock
+    private ReentrantReadWriteLock entryLock(boolean directory, int firstBlock) {
+        return directory ? locks.directory(firstBlock) : locks.file(firstBlock);
+    }
+
+    private void forgetEntryLock(boolean directory, int firstBlock) {
+        if (!directory) locks.releaseFile(firstBlock);
+    }
+
+    //a trava exclusiva de uma entrada que a propria thread segura para leitura (um handle de leitura aberto)
+    //nunca seria conseguida: falha na hora, em vez de esperar para sempre
+    private static void checkUpgrade(ReentrantReadWriteLock lock, boolean exclusive, String path) throws FileSystemException {
+        if (exclusive && lock.getReadHoldCount() > 0) {
+            throw new FileSystemException("/" + path + " já está aberto para leitura por esta thread");
+        }
+    }
+
+    //cada handle aberto segura a trava de leitura do volume, e a thread que tem um aberto nunca conseguiria a de escrita
+    private void checkVolumeUpgrade() throws FileSystemException {
+        if (volume.getReadHoldCount() > 0) {
+            throw new FileSystemException("Esta thread tem arquivos abertos; feche-os antes de formatar o volume");
+        }
+    }
+
+    //resolve e trava o caminho, conferindo se ele é um diretório
+    private Locked lockDir(String path, boolean exclusive) throws FileSystemException {
+        Locked locked = acquire(path, exclusive);
+        if (!locked.dentry.exists() || !isDirectory(locked.dentry.entry)) {
+            locked.close();
+            throw new FileSystemException("Não há nenhum diretório chamado /" + locked.dentry.path);
+        }
+        return locked;
+    }
+
+    //resolve e trava o caminho, conferindo se ele é um arquivo
+    private Locked lockArchive(String path, boolean exclusive) throws FileSystemException {
+        Locked locked = acquire(path, exclusive);
+        if (!locked.dentry.exists() || isDirectory(locked.dentry.entry)) {
+            locked.close();
+            throw new FileSystemException("Não há nenhum arquivo chamado /" + locked.dentry.path);
+        }
+        return locked;
+    }
+
+    //entrada resolvida junto com as travas que protegem ela; close solta as travas
+    private static final class Locked implements AutoCloseable {
+        final Dentry dentry;
+        private final Lock volume;
+        private final Lock lock;
+        /* devolve a trava da entrada para a tabela depois de solta; null se nao ha trava */
+        private final Runnable forget;
+        /* trava de operação segurada junto com as da entrada; null fora de uma operação */
+        private Lock operation;
+        private boolean closed;
+
+        Locked(Dentry dentry, Lock volume, Lock lock, Runnable forget) {
+            this.dentry = dentry;
+            this.volume = volume;
+            this.lock = lock;
+            this.forget = forget;
+        }
+
+        /* segura tambem a trava de operação (beginOperation), que é solta antes das outras */
+        Locked during(Lock operation) {
+            this.operation = operation;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (operation != null) operation.unlock();
+            if (lock != null) lock.unlock();
+            if (forget != null) forget.run();
+            volume.unlock();
+        }
+    }
+
+    //confere se o nome pode ser criado no diretorio e devolve a posicao vazia que vai recebe-lo
+    private int reserveDirEntry(Directory dir, String name) throws FileSystemException {
+        if (name.getBytes().length > superblock.nameSize()) {
+            throw new FileSystemException("O nome ''" + name + "'' tem mais de " + superblock.nameSize() + " bytes");
+        }
+
+        //se o arquivo/diretorio existe, avisa que ele já existe
+        if (doesEntryExists(dir, name)) {
+            throw new FileSystemException("O arquivo/entrada de diretório chamado ''" + name + "'' já existe");
+        }
+
+        //procura a primeira entrada de diretorio vazia; se não achou nem conseguiu aumentar o diretorio, avisa que ele esta cheio
+        int entradaDeDirVazia = firstFreeDirEntry(dir);
+        if (entradaDeDirVazia == -1) {
+            throw new FileSystemException("O diretório está cheio");
+        }
+        return entradaDeDirVazia;
+    }
+
+    //escreve a entrada nova na posicao reservada do diretorio e registra o caminho como existente
+    private void addDirEntry(Directory dir, int slot, String path, DirEntry dir_entry) {
+        writeDirEntry(dir.blockOf(slot), dir.indexOf(slot), dir_entry);
+        dir.added(PathResolver.nameOf(path), slot);
+        resolver.created(new Dentry(path, dir.firstBlock, dir.blockOf(slot), dir.indexOf(slot), dir_entry));
+    }
+
+
+    //------------------------METODOS DO LS--------------------------------
+
+    //ls [/caminho/diretorio] - listar diretorio
+    public ArrayList<String> ls(String path) throws FileSystemException {
+        try (Locked dir = lockDir(path, false)) {
+            return accessAndListDir(dir.dentry.entry.first_block);
+        }
+    }
+
+    //lista o diretorio que começa no blocoAtual, usando o indice de nomes do diretorio
+    private ArrayList<String> accessAndListDir(int blocoAtual) {
+        return directory(blocoAtual).names();
+    }
+
+
+    //------------------------METODOS DA ARVORE (FIND, DU, LS -R)--------------------------------
+
+    //ls -R [/caminho/diretorio] - lista o diretorio e todos os que estao dentro dele, cada um com o caminho antes
+    //cada diretorio vai para out inteiro de uma vez, assim que é lido
+    public void lsRecursive(String path, Consumer<String> out) throws FileSystemException {
+        walk(path, new TreeVisitor() {
+            @Override
+            public void directory(String dirPath, List<String> names, List<DirEntry> entries) {
+                StringBuilder listing = new StringBuilder(dirPath).append(':');
+                for (String name : names) {
+                    listing.append('\n').append(name);
+                }
+                out.accept(listing.toString());
+            }
+        });
+    }
+
+    //find [/caminho/diretorio] - caminhos da arvore cujo nome combina com o glob (null para todos), so arquivos
+    //(type 'f'), so diretorios (type 'd') ou os dois (type 0); cada caminho vai para out assim que é encontrado
+    public void find(String path, String glob, char type, Consumer<String> out) throws FileSystemException {
+        Pattern pattern = glob == null ? null : glob(glob);
+        String normalized = PathResolver.normalize(path);
+        String rootName = PathResolver.nameOf(normalized);
+        if (type != 'f' && (pattern == null || pattern.matcher(rootName).matches())) {
+            //o diretorio de onde a busca parte também entra, se ele existir
+            try (Locked dir = lockDir(normalized, false)) {
+                out.accept(dir.dentry.path);
+            }
+        }
+
+        walk(normalized, new TreeVisitor() {
+            @Override
+            public void directory(String dirPath, List<String> names, List<DirEntry> entries) {
+                for (int i = 0; i < names.size(); i++) {
+                    boolean dir = isDirectory(entries.get(i));
+                    if (type == 'f' && dir || type == 'd' && !dir) continue;
+                    if (pattern == null || pattern.matcher(names.get(i)).matches()) out.accept(dirPath + "/" + names.get(i));
+                }
+            }
+        });
+    }
+
+    //du [/caminho/diretorio] - soma dos sizes dos arquivos de cada diretorio da arvore, com tudo que esta dentro dele
+    //cada diretorio vai para out quando a arvore dele termina, o de cima por ultimo; com summary so o de cima
+    public long du(String path, boolean summary, Consumer<String> out) throws FileSystemException {
+        String normalized = PathResolver.normalize(path);
+        long total = walk(normalized, new TreeVisitor() {
+            @Override
+            public void finished(String dirPath, long bytes) {
+                if (!summary) out.accept(bytes + "\t" + dirPath);
+            }
+        });
+        if (summary) out.accept(total + "\t" + normalized);
+        return total;
+    }
+
+    //percorre a arvore que começa no diretorio path: cada subdiretorio vira uma tarefa do fork/join e cada diretorio
+    //vai para o visitor assim que é lido, sem juntar a arvore em memoria; devolve a soma dos sizes dos arquivos
+    //o volume fica travado para leitura durante a caminhada, entao um init espera ela terminar; o diretorio de cima
+    //so é conferido aqui, e é travado pela tarefa dele como os outros: se esta thread segurasse a trava enquanto as
+    //tarefas travam os filhos, alguem esperando para escrever nele deixaria as duas presas
+    public long walk(String path, TreeVisitor visitor) throws FileSystemException {
+        Lock lock = volume.readLock();
+        lock.lock();
+        try {
+            Dentry top;
+            try (Locked dir = lockDir(path, false)) {
+                top = dir.dentry;
+            }
+            return ForkJoinPool.commonPool().invoke(new WalkTree(top.path, top.entry.first_block, top.isRoot() ? -1 : top.parentDir, visitor));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //um diretorio da caminhada: le as entradas com a trava dele, solta a trava e so entao desce nos subdiretorios,
+    //entao nenhuma tarefa espera pelas outras segurando uma trava
+    private final class WalkTree extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final int firstBlock;
+        /* diretorio pai, onde a entrada é conferida antes de travar; -1 na root, que nunca é excluida */
+        private final int parentDir;
+        private final TreeVisitor visitor;
+
+        WalkTree(String path, int firstBlock, int parentDir, TreeVisitor visitor) {
+            this.path = path;
+            this.firstBlock = firstBlock;
+            this.parentDir = parentDir;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected Long compute() {
+            ArrayList<String> names = new ArrayList<>();
+            ArrayList<DirEntry> entries = new ArrayList<>();
+            Lock lock;
+            if (parentDir < 0) {
+                lock = locks.directory(firstBlock).readLock();
+                lock.lock();
+            } else {
+                lock = lockTreeDir(parentDir, PathResolver.nameOf(path), firstBlock);
+                //o diretorio foi removido depois que o pai foi lido
+                if (lock == null) return 0L;
+            }
+            try {
+                readTreeDir(firstBlock, names, entries);
+            } finally {
+                lock.unlock();
+            }
+
+            long bytes = 0;
+            ArrayList<WalkTree> subdirs = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                DirEntry entry = entries.get(i);
+                if (isDirectory(entry)) {
+                    WalkTree task = new WalkTree(path + "/" + names.get(i), entry.first_block, firstBlock, visitor);
+                    task.fork();
+                    subdirs.add(task);
+                } else {
+                    bytes += Integer.toUnsignedLong(entry.size);
+                }
+            }
+            //os subdiretorios ja estao com outras threads enquanto este vai para o visitor
+            visitor.directory(path, names, entries);
+
+            for (WalkTree task : subdirs) {
+                bytes += task.join();
+            }
+            visitor.finished(path, bytes);
+            return bytes;
+        }
+    }
+
+    //trava para leitura um diretorio encontrado na caminhada, conferindo com a trava do pai que a entrada ainda
+    //aponta para ele; devolve null se ele nao esta mais la. Como no acquire, a trava do diretorio só é tentada
+    //com tryLock enquanto a do pai está presa
+    private Lock lockTreeDir(int parentDir, String name, int firstBlock) {
+        while (true) {
+            Lock lock;
+            ReentrantReadWriteLock parentLock = locks.directory(parentDir);
+            Lock parent = parentLock.readLock();
+            parent.lock();
+            try {
+                //o pai foi excluido por um unlink -r enquanto a tarefa esperava
+                if (!locks.isCurrent(parentDir, parentLock)) return null;
+                Directory dir = directory(parentDir);
+                int slot = dir.find(name);
+                if (slot < 0) return null;
+                DirBlock.Entry entry = readDirBlock(dir.blockOf(slot)).entry(dir.indexOf(slot));
+                if (entry.attributes() != DIRETORIO || entry.firstBlock() != firstBlock) return null;
+                lock = locks.directory(firstBlock).readLock();
+                if (lock.tryLock()) return lock;
+            } finally {
+                parent.unlock();
+            }
+
+            //outra thread está alterando o diretorio: espera por ela e confere de novo
+            lock.lock();
+            lock.unlock();
+        }
+    }
+
+    //le as entradas ocupadas do diretorio que começa em firstBlock, na ordem dos blocos
+    private void readTreeDir(int firstBlock, List<String> names, List<DirEntry> entries) {
+        int block = firstBlock;
+        for (int hops = 0; isChained(block) && hops < fat.length(); hops++) {
+            DirBlock dirBlock = readDirBlock(block);
+            for (int i = 0; i < dirBlock.entries(); i++) {
+                DirBlock.Entry e = dirBlock.entry(i);
+                if (e.isEmpty()) continue;
+                names.add(e.name());
+                entries.add(e.toDirEntry());
+            }
+            block = fat.get(block);
+        }
+    }
+
+    //converte um glob em expressao regular: * é qualquer sequencia, ? um caractere e [abc] ou [!abc] um conjunto
+    private static Pattern glob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inSet = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (inSet) {
+                if (c == ']') inSet = false;
+                else if (c == '\\' || c == '[' || c == '&' || c == '^') regex.append('\\');
+                regex.append(c);
+            } else if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else if (c == '[' && glob.indexOf(']', i + (glob.startsWith("!", i + 1) ? 3 : 2)) > 0) {
+                //um [ sem o ] depois dele, ou com o conjunto vazio, é so o caractere
+                inSet = true;
+                regex.append('[');
+                if (glob.charAt(i + 1) == '!') {
+                    regex.append('^');
+                    i++;
+                }
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+
+    //------------------------METODOS DO READ--------------------------------
+
+    //read [/caminho/arquivo] - ler o conteudo de um arquivo
+    public void readArchive(String path, OutputStream out) throws FileSystemException {
+        try (Locked archive = lockArchive(path, false)) {
+            accessAndReadArchive(archive.dentry.entry, out);
+        }
+    }
+
+    //abre uma leitura sequencial do arquivo: segue a cadeia da FAT e antecipa os proximos blocos,
+    //ou, em modo extent, le cada sequencia de blocos com uma unica transferencia; arquivos comprimidos sao descomprimidos
+    private InputStream openArchive(DirEntry entry) throws IOException {
+        if (usesHandle(entry)) return handle(entry, blockMap(entry), false, e -> {}, () -> {}).asInputStream();
+        return new ArchiveInputStream(device, fat, entry, READAHEAD_BLOCKS);
+    }
+
+    //copia o conteudo do arquivo para a saida, um bloco por vez ou uma sequencia de blocos em modo extent
+    private void accessAndReadArchive(DirEntry entry, OutputStream out) {
+        try (InputStream in = openArchive(entry)) {
+            byte[] chunk = new byte[usesHandle(entry) ? Math.max(superblock.blockSize, TRANSFER_BYTES) : superblock.blockSize];
+            int lidos;
+            while ((lidos = in.read(chunk)) > 0) {
+                out.write(chunk, 0, lidos);
+            }
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    //------------------------METODOS DO MKDIR--------------------------------
+
+    //mkdir [/caminho/diretorio] - criar diretorio
+    public void mkdir(String path) throws FileSystemException {
+        String normalized = PathResolver.normalize(path);
+        String parentPath = PathResolver.parentOf(normalized);
+        if (parentPath == null) {
+            throw new FileSystemException("O arquivo/entrada de diretório chamado ''root'' já existe");
+        }
+
+        try (Locked parent = lockDir(parentPath, true).during(beginOperation())) {
+            accessAndCreateDir(normalized, parent.dentry);
+        }
+    }
+
+    //cria o diretorio descrito em path como entrada de diretorio no diretorio pai e como diretorio na FAT
+    private void accessAndCreateDir(String path, Dentry parent) throws FileSystemException {
+        int blocoAtual = parent.entry.first_block;
+        String name = PathResolver.nameOf(path);
+
+        //procura a entrada de diretorio vazia para criar o subdiretorio
+        Directory dir = directory(blocoAtual);
+        int entradaDeDirVazia = reserveDirEntry(dir, name);
+
+        //procura a primeira entrada livre da FAT
+        int firstblock = firstFreeFATEntry();
+
+        //return -1 significa que a FAT está cheia, então para de processar
+        if(firstblock == -1) {
+            throw new FileSystemException("A FAT está cheia");
+        }
+
+        //define a entrada firstblock da FAT como utilizada (fim de arquivo 0x7fff)
+        fat.set(firstblock, FIM_DE_ARQUIVO);
+
+        //cria a entrada de diretorio para adicionar na entrada de diretorio vazia do blocoAtual
+        DirEntry dir_entry = new DirEntry();
+        byte[] namebytes = name.getBytes();
+        System.arraycopy(namebytes, 0, dir_entry.filename, 0, namebytes.length);
+
+        //define informacoes da entrada de diretorio
+        dir_entry.attributes = DIRETORIO;
+        dir_entry.first_block = firstblock;
+        dir_entry.size = 0;
+
+        //escreve um bloco completamente VAZIO no arquivo .dat; um indice antigo desse bloco deixa de valer
+        writeEmptyDirBlock(firstblock);
+        forgetDirectory(firstblock);
+        locks.newDirectory(firstblock);
+
+        //escreve a entrada de diretorio criada na entrada de diretorio vazia do diretorio pai
+        addDirEntry(dir, entradaDeDirVazia, path, dir_entry);
+    }
+
+
+    //------------------------METODOS DO CREATEARCHIVE--------------------------------
+
+    //create [/caminho/arquivo] - criar arquivo
+    public void createArchive(String path, String content) throws FileSystemException {
+        String normalized = PathResolver.normalize(path);
+        String parentPath = PathResolver.parentOf(normalized);
+        if (parentPath == null) {
+            throw new FileSystemException("Por favor, insira o caminho específico para executar o comando adequadamente");
+        }
+
+        //o arquivo é criado com a extensão .txt
+        try (Locked parent = lockDir(parentPath, true).during(beginOperation())) {
+            accessAndCreateArchive(normalized + ".txt", parent.dentry, content);
+        }
+    }
+
+    //cria o arquivo descrito em path dentro do diretorio pai
+    private void accessAndCreateArchive(String path, Dentry parent, String content) throws FileSystemException {
+        try (OutputStream out = openNewArchive(path, parent)) {
+            out.write(content.getBytes());
+        } catch (IOException e) {
+            throw new FileSystemException(e.getMessage());
+        }
+    }
+
+    //cria a entrada do arquivo com um primeiro bloco vazio e devolve uma escrita sequencial para o seu conteudo
+    //a entrada de diretorio só é gravada quando a escrita é fechada, já com o tamanho final
+    private OutputStream openNewArchive(String path, Dentry parent) throws FileSystemException {
+        int blocoAtual = parent.entry.first_block;
+        String name = PathResolver.nameOf(path);
+
+        //procura a entrada de diretorio vazia para criar o arquivo
+        Directory dir = directory(blocoAtual);
+        int entradaDeDirVazia = reserveDirEntry(dir, name);
+
+        //procura a primeira entrada livre da FAT
+        int firstblock = firstFreeFATEntry();
+
+        //return -1 significa que a FAT está cheia, então para de processar
+        if(firstblock == -1) {
+            throw new FileSystemException("A FAT está cheia");
+        }
+
+        //define a entrada firstblock da FAT como utilizada (fim de arquivo 0x7fff)
+        fat.set(firstblock, FIM_DE_ARQUIVO);
+
+        //cria a entrada de diretorio com o arquivo para adicionar na entrada de diretorio do blocoAtual
+        DirEntry dir_entry = new DirEntry();
+        byte[] namebytes = name.getBytes();
+        System.arraycopy(namebytes, 0, dir_entry.filename, 0, namebytes.length);
+
+        //define informacoes da entrada de diretorio
+        dir_entry.attributes = ARQUIVO;
+        dir_entry.first_block = firstblock;
+        dir_entry.size = 0;
+
+        boolean dedupFile = dedupFiles && !compressedFiles;
+        if (extentFiles || compressedFiles || dedupFile) {
+            //em modo extent o firstblock guarda a lista de extents, vazia; arquivos comprimidos sao escritos pelo
+            //FileHandle, que comprime o conteudo. A entrada é gravada agora e de novo
+            //com o size final quando a escrita é fechada
+            //arquivos em modo dedup guardam os blocos em uma lista de extents, porque um bloco pode estar em varios arquivos
+            boolean extentFile = extentFiles || dedupFile;
+            dir_entry.attributes = (byte) (ARQUIVO | (extentFile ? EXTENTS : 0) | (compressedFiles ? COMPRIMIDO : 0) | (dedupFile ? DEDUP : 0));
+            try {
+                BlockMap blocks = extentFile ? ExtentList.create(fat, metadata, superblock.blockSize, firstblock) : FatChain.load(fat, firstblock);
+                if (dedupFile) ((ExtentList) blocks).useDedup(dedupTable());
+                addDirEntry(dir, entradaDeDirVazia, path, dir_entry);
+                int block = dir.blockOf(entradaDeDirVazia);
+                int index = dir.indexOf(entradaDeDirVazia);
+                return handle(dir_entry, blocks, true, e -> writeDirEntry(block, index, e), () -> {}).asOutputStream(0);
+            } catch (IOException e) {
+                throw new FileSystemException(e.getMessage());
+            }
+        }
+
+        //no fim da escrita, escreve a entrada de diretorio criada na entrada de diretorio vazia do diretorio pai
+        return new ArchiveOutputStream(device, fat, dir_entry, e -> addDirEntry(dir, entradaDeDirVazia, path, e));
+    }
+
+
+    //------------------------METODOS DO WRITE--------------------------------
+
+    //write "string" [/caminho/arquivo] - escrever dados em um arquivo (sobrescrever dados)
+    public void writeArchive(String path, String content) throws FileSystemException {
+        try (Locked archive = lockArchive(path, true).during(beginOperation());
+             OutputStream out = openArchiveForWrite(archive.dentry)) {
+            out.write(content.getBytes());
+        } catch (IOException e) {
+            throw new FileSystemException(e.getMessage());
+        }
+    }
+
+    //devolve uma escrita sequencial que substitui o conteudo do arquivo, reaproveitando a cadeia de blocos dele
+    //(em modo extent, os blocos sao liberados e reservados de novo em sequencia)
+    //o size da entrada de diretorio é atualizado uma vez, quando a escrita é fechada
+    private OutputStream openArchiveForWrite(Dentry dentry) throws IOException {
+        if (usesHandle(dentry.entry)) {
+            FileHandle handle = openHandle(dentry, true, () -> {});
+            handle.truncate(0);
+            return handle.asOutputStream(0);
+        }
+        return new ArchiveOutputStream(device, fat, dentry.entry, e -> writeDirEntry(dentry.parentBlock, dentry.index, e));
+    }
+
+
+    //------------------------METODOS DO UNLINK--------------------------------
+
+    //unlink [/caminho/arquivo] - excluir arquivo ou diretorio (o diretório precisa estar vazio)
+    public String unlink(String path) throws FileSystemException {
+        String normalized = PathResolver.normalize(path);
+        String parentPath = PathResolver.parentOf(normalized);
+        if (parentPath == null) {
+            throw new FileSystemException("Não é possível excluir a root. Para formatar, use init");
+        }
+        String name = PathResolver.nameOf(normalized);
+
+        while (true) {
+            Lock emUso;
+            Runnable esperando;
+            try (Locked parent = acquire(parentPath, true)) {
+                Directory dir = parent.dentry.exists() && isDirectory(parent.dentry.entry) ? directory(parent.dentry.entry.first_block) : null;
+                int slot = dir == null ? -1 : dir.find(name);
+                if (slot == -1) {
+                    throw new FileSystemException("Não há nenhum arquivo ou diretório chamado /" + normalized);
+                }
+                int block = dir.blockOf(slot);
+                int index = dir.indexOf(slot);
+                DirEntry entry = readDirEntry(block, index);
+
+                //a entrada também precisa estar livre: ninguem lendo o arquivo ou usando o diretorio
+                boolean directory = isDirectory(entry);
+                ReentrantReadWriteLock entryLock = entryLock(directory, entry.first_block);
+                Lock lock = entryLock.writeLock();
+                try {
+                    checkUpgrade(entryLock, true, normalized);
+                } catch (FileSystemException e) {
+                    forgetEntryLock(directory, entry.first_block);
+                    throw e;
+                }
+                if (lock.tryLock()) {
+                    Lock operation = beginOperation();
+                    try {
+                        if (isDirectory(entry) && !directory(entry.first_block).isEmpty()) {
+                            throw new FileSystemException("Diretório não está vazio");
+                        }
+
+                        //libera os blocos na FAT e apaga a entrada no diretorio pai
+                        if (isExtentFile(entry)) deleteExtents(entry);
+                        else deleteDirArc(entry.first_block);
+                        writeDirEntry(block, index, new DirEntry());
+                        dir.removed(name);
+                        if (isDirectory(entry)) {
+                            forgetDirectory(entry.first_block);
+                            locks.removeDirectory(entry.first_block);
+                        }
+                        resolver.invalidate(normalized);
+                    } finally {
+                        operation.unlock();
+                        lock.unlock();
+                        forgetEntryLock(directory, entry.first_block);
+                    }
+                    return "Diretório/Arquivo removido com sucesso";
+                }
+                emUso = lock;
+                esperando = () -> forgetEntryLock(directory, entry.first_block);
+            }
+
+            //espera quem está usando a entrada sem segurar o diretorio pai, e procura de novo
+            emUso.lock();
+            emUso.unlock();
+            esperando.run();
+        }
+    }
+
+    //unlink -r [/caminho] - exclui um arquivo ou um diretorio com tudo que esta dentro dele
+    //a arvore é percorrida em paralelo sem alterar nada; no fim, todos os blocos dela sao liberados na FAT de uma vez
+    //e so a entrada no diretorio pai é apagada (as entradas de dentro ficam nos blocos liberados)
+    //como no unlink, o diretorio pai é travado e a entrada precisa estar livre, aqui junto com tudo que esta dentro
+    //dela: as travas da arvore sao tentadas com tryLock e, se uma estiver em uso, tudo é solto antes de esperar por ela
+    public String unlinkRecursive(String path) throws FileSystemException {
+        String normalized = PathResolver.normalize(path);
+        String parentPath = PathResolver.parentOf(normalized);
+        if (parentPath == null) {
+            throw new FileSystemException("Não é possível excluir a root. Para formatar, use init");
+        }
+        String name = PathResolver.nameOf(normalized);
+
+        while (true) {
+            TreeLocks tree = new TreeLocks();
+            try (Locked parent = acquire(parentPath, true)) {
+                Directory dir = parent.dentry.exists() && isDirectory(parent.dentry.entry) ? directory(parent.dentry.entry.first_block) : null;
+                int slot = dir == null ? -1 : dir.find(name);
+                if (slot == -1) {
+                    throw new FileSystemException("Não há nenhum arquivo ou diretório chamado /" + normalized);
+                }
+                int block = dir.blockOf(slot);
+                int index = dir.indexOf(slot);
+                DirEntry entry = readDirEntry(block, index);
+
+                try {
+                    if (tree.lock(entry, normalized)) {
+                        Lock operation = beginOperation();
+                        try {
+                            deleteTree(entry, tree);
+                            writeDirEntry(block, index, new DirEntry());
+                            dir.removed(name);
+                            resolver.invalidate(normalized);
+                        } finally {
+                            operation.unlock();
+                        }
+                        return "Diretório/Arquivo removido com sucesso";
+                    }
+                } finally {
+                    tree.unlock();
+                }
+            }
+
+            //espera quem está usando a arvore sem segurar nenhuma trava, e procura de novo
+            tree.await();
+        }
+    }
+
+    //libera os blocos da arvore travada; os diretorios dela começavam em blocos que foram liberados
+    private void deleteTree(DirEntry entry, TreeLocks tree) throws FileSystemException {
+        BitSet freed;
+        ConcurrentLinkedQueue<ExtentList> dedupLists = new ConcurrentLinkedQueue<>();
+        try {
+            freed = ForkJoinPool.commonPool().invoke(new CollectTree(entry, dedupLists));
+        } catch (UncheckedIOException e) {
+            throw new FileSystemException(e.getCause().getMessage());
+        }
+
+        fat.clear(freed);
+        //os blocos de dados dos arquivos em modo dedup podem estar em outros arquivos: so perdem uma referencia
+        for (ExtentList file : dedupLists) {
+            file.releaseData();
+        }
+        for (int firstBlock : tree.dirBlocks) {
+            forgetDirectory(firstBlock);
+            locks.removeDirectory(firstBlock);
+        }
+    }
+
+    //travas exclusivas de uma entrada e de tudo que esta dentro dela, tentadas pela thread do unlink -r
+    //com a trava de cada diretorio as entradas dele nao mudam, entao a arvore é lida enquanto é travada
+    private final class TreeLocks {
+        private final ArrayList<Lock> held = new ArrayList<>();
+        private final ArrayList<Runnable> forgets = new ArrayList<>();
+        /* primeiro bloco de cada diretorio travado */
+        final ArrayList<Integer> dirBlocks = new ArrayList<>();
+        /* trava que outra thread esta usando; a espera por ela é feita depois que todas foram soltas */
+        private Lock busy;
+        private Runnable busyForget;
+
+        /* trava a entrada e tudo que esta dentro dela; devolve false, guardando a trava em uso, se uma falhar */
+        boolean lock(DirEntry entry, String path) throws FileSystemException {
+            boolean directory = isDirectory(entry);
+            int firstBlock = entry.first_block;
+            ReentrantReadWriteLock entryLock = entryLock(directory, firstBlock);
+            Runnable forget = () -> forgetEntryLock(directory, firstBlock);
+            try {
+                checkUpgrade(entryLock, true, path);
+            } catch (FileSystemException e) {
+                forget.run();
+                throw e;
+            }
+            Lock lock = entryLock.writeLock();
+            if (!lock.tryLock()) {
+                busy = lock;
+                busyForget = forget;
+                return false;
+            }
+            held.add(lock);
+            forgets.add(forget);
+            if (!directory) return true;
+
+            dirBlocks.add(firstBlock);
+            int block = firstBlock;
+            for (int hops = 0; isChained(block) && hops < fat.length(); hops++) {
+                DirBlock dirBlock = readDirBlock(block);
+                for (int i = 0; i < dirBlock.entries(); i++) {
+                    DirBlock.Entry e = dirBlock.entry(i);
+                    if (!e.isEmpty() && !lock(e.toDirEntry(), path + "/" + e.name())) return false;
+                }
+                block = fat.get(block);
+            }
+            return true;
+        }
+
+        /* solta as travas na ordem contraria de quando foram pegas */
+        void unlock() {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+            forgets.forEach(Runnable::run);
+            held.clear();
+            forgets.clear();
+        }
+
+        void await() {
+            busy.lock();
+            busy.unlock();
+            busyForget.run();
+        }
+    }
+
+    //blocos de uma entrada e, se ela for um diretorio, de tudo que esta dentro dele
+    //cada subdiretorio vira uma tarefa do fork/join; os arquivos sao seguidos na FAT em memoria, sem ler blocos de dados
+    private final class CollectTree extends RecursiveTask<BitSet> {
+        private static final long serialVersionUID = 1L;
+
+        private final DirEntry entry;
+        private final Queue<ExtentList> dedupFiles;
+
+        CollectTree(DirEntry entry, Queue<ExtentList> dedupFiles) {
+            this.entry = entry;
+            this.dedupFiles = dedupFiles;
+        }
+
+        @Override
+        protected BitSet compute() {
+            BitSet blocks = new BitSet();
+            if (!isDirectory(entry)) {
+                collectFile(entry, blocks, dedupFiles);
+                return blocks;
+            }
+
+            ArrayList<CollectTree> subdirs = new ArrayList<>();
+            int block = entry.first_block;
+            for (int hops = 0; isChained(block) && hops < fat.length(); hops++) {
+                blocks.set(block);
+                DirBlock dirBlock = readDirBlock(block);
+                for (int i = 0; i < dirBlock.entries(); i++) {
+                    DirBlock.Entry e = dirBlock.entry(i);
+                    if (e.isEmpty()) continue;
+
+                    DirEntry child = e.toDirEntry();
+                    if (isDirectory(child)) {
+                        CollectTree task = new CollectTree(child, dedupFiles);
+                        task.fork();
+                        subdirs.add(task);
+                    } else {
+                        collectFile(child, blocks, dedupFiles);
+                    }
+                }
+                block = fat.get(block);
+            }
+
+            for (CollectTree task : subdirs) {
+                blocks.or(task.join());
+            }
+            return blocks;
+        }
+    }
+
+    //marca os blocos de um arquivo: a cadeia na FAT ou as sequencias e a lista de extents
+    //arquivos em modo dedup vao para a fila, e os blocos de dados deles sao soltos pela tabela de dedup
+    private void collectFile(DirEntry entry, BitSet blocks, Queue<ExtentList> dedupFiles) {
+        if (isExtentFile(entry)) {
+            try {
+                ExtentList list = extents(entry);
+                list.collect(blocks);
+                if (list.isDedup()) dedupFiles.add(list);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        int block = entry.first_block;
+        for (int hops = 0; isChained(block) && hops < fat.length(); hops++) {
+            blocks.set(block);
+            block = fat.get(block);
+        }
+    }
+
+    //o valor é um bloco do volume, e nao o fim da cadeia ou um bloco livre
+    private boolean isChained(int block) {
+        return block > 0 && block < fat.length() && block != FIM_DE_ARQUIVO && block != FAT;
+    }
+
+    private void deleteDirArc(int blocoAtual) {
+
+        // array que conterá todos blocos a serem deletados
+        ArrayList<Integer> blocksToDelete = new ArrayList<>();
+
+        // funçao que adiciona no array os blocos a serem deletados
+        ArrayList<Integer> toDelete = findAllBlocks(blocoAtual, blocksToDelete);
+
+        // coloca cada bloco da fat como zero
+        for (Integer block:toDelete) {
+            fat.set(block, 0);
+        }
+
+    }
+
+    //em modo extent cada sequencia de blocos é liberada de uma vez, sem seguir nenhuma cadeia
+    private void deleteExtents(DirEntry entry) throws FileSystemException {
+        try {
+            extents(entry).delete();
+        } catch (IOException e) {
+            throw new FileSystemException(e.getMessage());
+        }
+    }
+
+    private ArrayList<Integer> findAllBlocks(int blocoAtual, ArrayList<Integer> blocks) {
+        // adiciona o bloco atual e segue para o próximo ate o fim de arquivo
+        // (um laço e nao recursao: em volumes grandes a cadeia pode ter milhoes de blocos)
+        while (fat.get(blocoAtual) != FIM_DE_ARQUIVO) {
+            blocks.add(blocoAtual);
+            blocoAtual = fat.get(blocoAtual);
+        }
+        blocks.add(blocoAtual);
+
+        return blocks;
+    }
+
+    //------------------------METODOS DO APPEND--------------------------------
+
+    //append "string" [/caminho/arquivo] - anexar dados em um arquivo
+    public void append(String path, String content) throws FileSystemException {
+        try (Locked archive = lockArchive(path, true).during(beginOperation());
+             OutputStream out = openArchiveForAppend(archive.dentry)) {
+            out.write(content.getBytes());
+        } catch (IOException e) {
+            throw new FileSystemException(e.getMessage());
+        }
+    }
+
+    //devolve uma escrita que continua no fim do arquivo: só o ultimo bloco é lido e só os blocos novos entram na FAT
+    //o size da entrada de diretorio é atualizado uma vez, quando a escrita é fechada
+    private OutputStream openArchiveForAppend(Dentry dentry) throws IOException {
+        if (usesHandle(dentry.entry)) {
+            FileHandle handle = openHandle(dentry, true, () -> {});
+            return handle.asOutputStream(handle.size());
+        }
+        return ArchiveOutputStream.append(device, fat, dentry.entry, e -> writeDirEntry(dentry.parentBlock, dentry.index, e));
+    }
+
+
+    //------------------------METODOS DE ACESSO ALEATORIO--------------------------------
+
+    //abre o arquivo para leitura e escrita em qualquer posicao; o size só é gravado no close do FileHandle
+    public FileHandle open(String path) throws FileSystemException {
+        return open(path, true);
+    }
+
+    //abre o arquivo para acesso aleatorio; o handle segura a trava do arquivo ate o close,
+    //de leitura (varios handles ao mesmo tempo) ou exclusiva se writable
+    //as travas sao da thread que abriu: o handle tem que ser usado e fechado por ela, e enquanto ela tiver um handle
+    //de leitura aberto nao pode abrir o mesmo arquivo para escrita nem exclui-lo, e com qualquer handle aberto nao pode
+    //chamar o init (isso falha em vez de travar)
+    public FileHandle open(String path, boolean writable) throws FileSystemException {
+        Locked archive = lockArchive(path, writable);
+        Dentry dentry = archive.dentry;
+        try {
+            return openHandle(dentry, writable, archive::close);
+        } catch (IOException e) {
+            archive.close();
+            throw new FileSystemException(e.getMessage());
+        }
+    }
+
+    //pread [/caminho/arquivo] posicao tamanho - ler um trecho do arquivo
+    //o buffer tem no maximo o que existe no arquivo a partir da posicao, e nao o tamanho pedido
+    public String readAt(String path, long position, int length) throws FileSystemException {
+        if (position < 0) throw new FileSystemException("Posição inválida: " + position);
+        if (length < 0) throw new FileSystemException("Tamanho inválido: " + length);
+        try (FileHandle handle = open(path, false)) {
+            if (position >= handle.size()) return "";
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, handle.size() - position));
+            handle.read(buffer, position);
+            return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new FileSystemException(e.getMessage());
+        }
+    }
+
+    //pwrite [/caminho/arquivo] posicao "string" - escrever um trecho do arquivo, sem reescrever o resto
+    public void writeAt(String path, long position, String content) throws FileSystemException {
+        if (position < 0) throw new FileSystemException("Posição inválida: " + position);
+        //o handle fecha antes das travas, entao o size novo entra no mesmo commit que os blocos
+        try (Locked archive = lockArchive(path, true).during(beginOperation());
+             FileHandle handle = openHandle(archive.dentry, true, () -> {})) {
+            handle.write(ByteBuffer.wrap(content.getBytes()), position);
+        } catch (IOException e) {
+            throw new FileSystemException(e.getMessage());
+        }
+    }
+
+    //truncate [/caminho/arquivo] tamanho - mudar o tamanho do arquivo
+    public void truncate(String path, long size) throws FileSystemException {
+        //o handle fecha antes das travas, entao o size novo entra no mesmo commit que os blocos
+        try (Locked archive = lockArchive(path, true).during(beginOperation());
+             FileHandle handle = openHandle(archive.dentry, true, () -> {})) {
+            handle.truncate(size);
+        } catch (IOException e) {
+            throw new FileSystemException(e.getMessage());
+        }
+    }
+
+
+    //------------------------COMMIT--------------------------------
+
+    //ponto de commit: uma transacao no journal com tudo que mudou desde o ultimo commit,
+    //ou, em volumes sem journal, os blocos da FAT alterados
+    public void commit() {
+        try {
+            commitMetadata();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    //o commit em grupo (batch e servidor) deve acontecer agora: as alteracoes pendentes estao perto de nao caber
+    //no journal, e um commit maior que ele nao seria atomico
+    public boolean commitDue() {
+        Journal j = journal;
+        return j != null && j.remaining() < j.capacity() / 4;
+    }
+
+    //commit e tudo que estiver no cache sincronizado no dispositivo
+    public void sync() throws IOException {
+        //o commit do journal ja termina com um fsync
+        if (!commitMetadata()) device.sync();
+    }
+
+    //devolve true se o commit terminou com o dispositivo sincronizado
+    private boolean commitMetadata() throws IOException {
+        Lock lock = operations.writeLock();
+        lock.lock();
+        try {
+            Journal j = journal;
+            if (j != null) return j.commit();
+            fat.flush(device);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //inicio de uma operacao que altera metadados: o commit espera ela terminar
+    //é chamado depois de travar as entradas, entao quem segura a trava de operação nunca espera por outra
+    //devolve a trava ja segurada; soltar ela libera o commit
+    private Lock beginOperation() {
+        Lock lock = operations.readLock();
+        lock.lock();
+        return lock;
+    }
+
+    //acertos e faltas do cache de blocos e do cache de caminhos, e uso do journal
+    public String cacheStats() {
+        Lock lock = volume.readLock();
+        lock.lock();
+        try {
+            Journal j = journal;
+            return (cache == null ? "Cache desligado" : cache.toString()) + "\n" + resolver + (j == null ? "" : "\n" + j);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //contadores de E/S e latencias dos comandos; as metricas valem para o volume todo, inclusive depois de um init
+    public Metrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        commitMetadata();
+        //na desmontagem a FAT vai para o lugar dela, e a proxima montagem encontra o journal vazio
+        if (journal != null) journal.checkpoint();
+        device.close();
+    }
+
+
+    //------------------------MAIN--------------------------------
+
+    //java FileSystem [--device=channel|mmap] [--cache=<blocos>] [--serve=tcp:<porta>|unix:<arquivo>]
+    //                 [--batch[=<arquivo>]] [--commit-every=<comandos>] [--commit-ms=<milissegundos>] [--extents] [--compress] [--dedup]
+    public static void main(String[] args) throws IOException {
+        String modo = "channel";
+        Integer cacheBlocks = null;
+        String serve = null;
+        String batch = null;
+        int commitEvery = DEFAULT_COMMIT_EVERY;
+        long commitMillis = DEFAULT_COMMIT_MILLIS;
+        boolean extents = false;
+        boolean compress = false;
+        boolean dedup = false;
+        for (String arg : args) {
+            if (arg.startsWith("--device=")) modo = arg.substring("--device=".length());
+            else if (arg.startsWith("--cache=")) cacheBlocks = Integer.parseInt(arg.substring("--cache=".length()));
+            else if (arg.startsWith("--serve=")) serve = arg.substring("--serve=".length());
+            else if (arg.equals("--batch")) batch = "-";
+            else if (arg.startsWith("--batch=")) batch = arg.substring("--batch=".length());
+            else if (arg.startsWith("--commit-every=")) commitEvery = Integer.parseInt(arg.substring("--commit-every=".length()));
+            else if (arg.startsWith("--commit-ms=")) commitMillis = Long.parseLong(arg.substring("--commit-ms=".length()));
+            else if (arg.equals("--extents")) extents = true;
+            else if (arg.equals("--compress")) compress = true;
+            else if (arg.equals("--dedup")) dedup = true;
+        }
+        //o volume e aberto com a geometria do superbloco, e de novo com a geometria nova se o init mudar ela
+        String dispositivo = modo;
+        Integer cacheFixo = cacheBlocks;
+        boolean emBatch = batch != null;
+        DeviceFactory devices = volume -> openDevice(dispositivo, volume, cacheBlocks(cacheFixo, emBatch, volume));
+
+        int status = 0;
+        try (FileSystem fs = new FileSystem(devices.open(Superblock.probe(Paths.get(VOLUME_FILE))), devices)) {
+            fs.setExtentFiles(extents);
+            fs.setCompressedFiles(compress);
+            fs.setDedupFiles(dedup);
+            fs.metrics().register();
+            //no modo servidor o volume e compartilhado pelas conexoes em vez do shell
+            if (serve != null) FileSystemServer.run(fs, serve);
+            else if (batch != null) status = runBatch(fs, batch, commitEvery, commitMillis);
+            else fs.shell();
+        }
+        if (status != 0) System.exit(status);
+    }
+
+    //executa o script (ou a entrada padrao, se o arquivo for -) sem prompt e com group commit
+    private static int runBatch(FileSystem fs, String arquivo, int commitEvery, long commitMillis) throws IOException {
+        InputStream in = arquivo.equals("-") ? System.in : new FileInputStream(arquivo);
+        //a saida so vai para o terminal quando o buffer enche, e nao a cada linha
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false, "UTF-8");
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return new BatchRunner(fs, commitEvery, commitMillis).run(reader, out);
+        } finally {
+            out.flush();
+        }
+    }
+
+    //abre o filesystem.dat no modo de dispositivo escolhido, com o cache na frente
+    private static BlockDevice openDevice(String modo, Superblock volume, int cacheBlocks) throws IOException {
+        BlockDevice device;
+        switch (modo) {
+            case "mmap":
+                device = new MappedBlockDevice(VOLUME_FILE, volume.blockSize, volume.blocks);
+                break;
+            case "channel":
+                device = new FileChannelBlockDevice(VOLUME_FILE, volume.blockSize);
+                break;
+            default:
+                throw new IllegalArgumentException("Modo de dispositivo desconhecido: " + modo);
+        }
+        //--cache=0 desliga o cache e acessa o dispositivo diretamente
+        return cacheBlocks > 0 ? new BlockCache(device, cacheBlocks) : device;
+    }
+
+    //o --cache pedido ou, sem ele, 64 blocos; no batch o volume inteiro cabe no cache (ate 256 MB),
+    //entao nada vai para o disco entre os group commits
+    private static int cacheBlocks(Integer pedido, boolean batch, Superblock volume) {
+        if (pedido != null) return pedido;
+        if (!batch) return DEFAULT_CACHE_BLOCKS;
+        return (int) Math.min(volume.blocks, BATCH_CACHE_BYTES / volume.blockSize);
+    }
+
+    //------------------------SHELL--------------------------------
+
+    private void shell() {
+        Scanner scan = new Scanner(System.in);
+        Commands commands = new Commands(this);
+        boolean running = true;
+
+        while(running) {
+            System.out.println("\nDigite o comando desejado. Para sair, digite 'exit'");
+            // pega comando inteiro
+            running = commands.execute(scan.nextLine(), System.out) != Commands.FIM;
+
+            //fim do comando e ponto de commit: grava os blocos da FAT que o comando alterou
+            commit();
+        }
+        scan.close();
+    }
+}
@@ -0,0 +1,10 @@
+package filesystem;
+
+//erro de uma operacao do sistema de arquivos; a mensagem e mostrada para o usuario pelo shell
+public class FileSystemException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public FileSystemException(String message) {
+        super(message);
+    }
+}
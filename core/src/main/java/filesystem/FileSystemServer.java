@@ -0,0 +1,148 @@
+package filesystem;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//servidor do sistema de arquivos: varios clientes locais usam o mesmo volume montado, por TCP ou por socket Unix
+//protocolo de linhas em UTF-8: cada linha e um comando do shell e a resposta vem no formato de Commands.response
+//o cliente pode mandar varios comandos sem esperar as respostas (pipeline): elas voltam na mesma ordem,
+//e um lote de comandos ja recebidos tem um unico commit e um unico envio, ou mais de um se o lote nao couber no journal
+//cada conexao tem a sua thread, virtual quando a JVM tem threads virtuais
+public class FileSystemServer implements Closeable {
+    private final FileSystem fs;
+    private final ServerSocketChannel server;
+    private final ExecutorService connections = connectionExecutor();
+    /* arquivo do socket Unix, apagado no close; null no TCP */
+    private final Path socketFile;
+
+    /* address: tcp:<porta>, tcp:<host>:<porta> ou unix:<arquivo> */
+    public FileSystemServer(FileSystem fs, String address) throws IOException {
+        this.fs = fs;
+        if (address.startsWith("unix:")) {
+            socketFile = Paths.get(address.substring("unix:".length()));
+            //um socket que sobrou de uma execucao anterior impede o bind
+            Files.deleteIfExists(socketFile);
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            server.bind(UnixDomainSocketAddress.of(socketFile));
+        } else if (address.startsWith("tcp:")) {
+            socketFile = null;
+            server = ServerSocketChannel.open();
+            server.bind(tcpAddress(address.substring("tcp:".length())));
+        } else {
+            throw new IllegalArgumentException("Endereço desconhecido: " + address + " (use tcp:<porta> ou unix:<arquivo>)");
+        }
+    }
+
+    /* serve o volume ate o processo ser interrompido */
+    static void run(FileSystem fs, String address) throws IOException {
+        //o shutdown hook tambem fecha o servidor, entao ele nao é um recurso do try; close pode ser chamado duas vezes
+        FileSystemServer server = new FileSystemServer(fs, address);
+        try {
+            //no Ctrl+C a FAT e o cache vao para o disco antes da JVM terminar
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.close();
+                    fs.sync();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }));
+            System.out.println("Servindo em " + server.server.getLocalAddress());
+            server.serve();
+        } finally {
+            server.close();
+        }
+    }
+
+    /* aceita conexoes ate o servidor ser fechado */
+    public void serve() throws IOException {
+        while (true) {
+            SocketChannel client;
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            connections.execute(() -> handle(client));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        connections.shutdown();
+        if (socketFile != null) Files.deleteIfExists(socketFile);
+    }
+
+    //executa os comandos de uma conexao na ordem em que chegam
+    private void handle(SocketChannel client) {
+        Commands commands = new Commands(fs);
+        ByteArrayOutputStream saida = new ByteArrayOutputStream();
+        PrintStream print = new PrintStream(saida, true, StandardCharsets.UTF_8);
+
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(client))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                saida.reset();
+                int status = commands.execute(line, print);
+                out.write(Commands.response(status, saida.toString(StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8));
+                if (status == Commands.FIM) break;
+
+                //enquanto houver comandos ja recebidos as respostas ficam no buffer; no fim do lote, commit e envio
+                if (!in.ready() || fs.commitDue()) {
+                    fs.commit();
+                    out.flush();
+                }
+            }
+            fs.commit();
+            out.flush();
+        } catch (IOException e) {
+            //a conexao caiu; os comandos ja executados continuam no volume
+            fs.commit();
+        }
+    }
+
+    //<porta> escuta so no localhost; <host>:<porta> escuta no endereco pedido
+    private static SocketAddress tcpAddress(String address) {
+        int cut = address.lastIndexOf(':');
+        if (cut < 0) return new InetSocketAddress("localhost", Integer.parseInt(address));
+        return new InetSocketAddress(address.substring(0, cut), Integer.parseInt(address.substring(cut + 1)));
+    }
+
+    //uma thread virtual por conexao quando a JVM tem (Java 21+); antes disso, threads de plataforma reaproveitadas
+    private static ExecutorService connectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "conexao-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package filesystem;
+
+//mapa de blocos livres em bits empacotados em longs (bit 1 = bloco livre)
+//a busca comeca sempre de onde a ultima alocacao parou, entao alocacoes seguidas nao reprocessam o inicio do volume
+public class FreeSpaceMap {
+    private final long[] words;
+    private final int blocks;
+    private int freeCount;
+
+    /* posicao onde comeca a proxima busca */
+    private int hint;
+
+    public FreeSpaceMap(int blocks) {
+        this.blocks = blocks;
+        this.words = new long[(blocks + 63) / 64];
+    }
+
+    public void markFree(int block) {
+        long bit = 1L << block;
+        if ((words[block >>> 6] & bit) == 0) {
+            words[block >>> 6] |= bit;
+            freeCount++;
+        }
+    }
+
+    public void markUsed(int block) {
+        long bit = 1L << block;
+        if ((words[block >>> 6] & bit) != 0) {
+            words[block >>> 6] &= ~bit;
+            freeCount--;
+        }
+    }
+
+    public boolean isFree(int block) {
+        return (words[block >>> 6] & (1L << block)) != 0;
+    }
+
+    public int freeCount() {
+        return freeCount;
+    }
+
+    /* reserva um bloco livre e devolve seu numero, ou -1 se nao houver nenhum */
+    public int allocate() {
+        int block = nextFree(hint);
+        if (block < 0) block = nextFree(0);
+        if (block < 0) return -1;
+
+        markUsed(block);
+        hint = block + 1;
+        return block;
+    }
+
+    /* reserva n blocos, de preferencia em uma sequencia continua; devolve null se nao houver blocos suficientes */
+    public int[] allocate(int n) {
+        if (n > freeCount) return null;
+        int[] result = new int[n];
+
+        int start = findRun(n);
+        if (start >= 0) {
+            for (int i = 0; i < n; i++) {
+                result[i] = start + i;
+                markUsed(start + i);
+            }
+            hint = start + n;
+        } else {
+            //nao existe sequencia continua do tamanho pedido, entao pega os proximos livres a partir da dica
+            for (int i = 0; i < n; i++) {
+                result[i] = allocate();
+            }
+        }
+        return result;
+    }
+
+    /* primeiro bloco livre a partir de from (inclusive), ou -1 */
+    public int nextFree(int from) {
+        if (from >= blocks) return -1;
+        int w = from >>> 6;
+        long word = words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int block = (w << 6) + Long.numberOfTrailingZeros(word);
+                return block < blocks ? block : -1;
+            }
+            if (++w == words.length) return -1;
+            word = words[w];
+        }
+    }
+
+    /* primeiro bloco ocupado a partir de from (inclusive), ou blocks se todos forem livres */
+    public int nextUsed(int from) {
+        if (from >= blocks) return blocks;
+        int w = from >>> 6;
+        long word = ~words[w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                return Math.min(blocks, (w << 6) + Long.numberOfTrailingZeros(word));
+            }
+            if (++w == words.length) return blocks;
+            word = ~words[w];
+        }
+    }
+
+    //procura uma sequencia de n blocos livres, primeiro a partir da dica e depois do inicio
+    private int findRun(int n) {
+        int start = findRun(n, hint, blocks);
+        if (start < 0) start = findRun(n, 0, Math.min(blocks, hint + n));
+        return start;
+    }
+
+    private int findRun(int n, int from, int limit) {
+        int start = nextFree(from);
+        while (start >= 0 && start + n <= limit) {
+            int end = nextUsed(start);
+            if (end - start >= n) return start;
+            start = nextFree(end);
+        }
+        return -1;
+    }
+}
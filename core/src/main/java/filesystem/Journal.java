@@ -0,0 +1,348 @@
+package filesystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+//journal de metadados (write-ahead) em uma regiao fixa no fim do volume, reservada na FAT pelo init
+//as alteracoes de metadados de um commit viram uma transacao com registros compactos: valores novos de entradas da FAT,
+//entradas de diretorio de 32 bytes e blocos de diretorio zerados, protegidos por um CRC. A transacao vai para o journal
+//com um unico fsync, e so depois os blocos de diretorio alterados vao para o lugar deles; a FAT so e gravada no lugar
+//dela no checkpoint, que acontece quando o journal enche ou na desmontagem, a partir de uma copia que so recebe o que
+//ja foi para o journal. Na montagem, as transacoes validas depois do ultimo checkpoint sao aplicadas de novo (replay)
+//ate o commit, os blocos de diretorio alterados ficam em memoria (overlay) e as leituras de diretorio passam por eles,
+//entao nada que ainda nao esta no journal chega ao disco
+//um bloco de diretorio liberado pode voltar como bloco de dados de um arquivo, que nao passa pelo journal: no commit,
+//o overlay dele é descartado e a transacao leva um registro de revogacao, e o replay ignora os registros desse bloco
+//que vem antes da revogacao, entao o conteudo antigo do diretorio nunca é gravado por cima dos dados do arquivo
+public class Journal {
+    /* blocos reservados para o journal: 1 de cabecalho e o resto para as transacoes */
+    static final int BLOCKS = 64;
+
+    private static final long MAGIC = 0x46534a4f55524e31L; //"FSJOURN1"
+    /* na versao 1 o numero da entrada de diretorio tinha 1 byte; a 2 usa 2 bytes, para blocos de ate 64K;
+       a 3 tem registros de revogacao */
+    private static final int VERSION = 3;
+    private static final int TXN_MAGIC = 0x54584e31; //"TXN1"
+    /* magic, sequencia e tamanho antes dos registros, CRC depois */
+    private static final int TXN_HEADER = 16;
+    private static final int TXN_OVERHEAD = TXN_HEADER + 4;
+
+    /* tipos de registro */
+    private static final byte FAT_ENTRY = 1;
+    private static final byte DIR_ENTRY = 2;
+    private static final byte ZERO_BLOCK = 3;
+    private static final byte REVOKE = 4;
+    /* tamanho de um registro de entrada da FAT: tipo, entrada e valor */
+    private static final int FAT_RECORD = 9;
+
+    private final BlockDevice device;
+    private final Fat fat;
+    private final int blockSize;
+    private final int firstBlock;
+    /* inicio e tamanho da area de transacoes, em bytes no volume */
+    private final long area;
+    private final int capacity;
+
+    /* proxima posicao livre na area e sequencia da proxima transacao */
+    private int head;
+    private long sequence;
+    /* versao dos registros que estao na area; passa a ser VERSION no primeiro checkpoint */
+    private int version = VERSION;
+
+    /* FAT como esta no journal, e os blocos dela que mudaram desde o ultimo checkpoint */
+    private final int[] committed;
+    private final BitSet committedDirty = new BitSet();
+
+    /* blocos com registros nas transacoes desde o ultimo checkpoint, e no commit em andamento */
+    private final BitSet logged = new BitSet();
+    private final BitSet pendingBlocks = new BitSet();
+
+    /* blocos de diretorio alterados desde o ultimo commit, em ordem de alteracao */
+    private final LinkedHashMap<Integer, byte[]> overlay = new LinkedHashMap<>();
+    /* registros de diretorio do commit em andamento */
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(records);
+
+    private long commits;
+    private long checkpoints;
+    /* commits que nao couberam no journal e foram gravados sem atomicidade */
+    private long oversized;
+
+    private Journal(BlockDevice device, Fat fat, int firstBlock) {
+        this.device = device;
+        this.fat = fat;
+        this.blockSize = device.blockSize();
+        this.firstBlock = firstBlock;
+        this.area = (long) (firstBlock + 1) * blockSize;
+        this.capacity = (BLOCKS - 1) * blockSize;
+        this.committed = fat.snapshot();
+    }
+
+    /* cria um journal vazio em firstBlock; quem chama reserva os blocos na FAT
+       a area de transacoes nao e zerada: a sequencia comeca em um valor aleatorio, entao transacoes de um journal
+       anterior que sobraram na area nunca sao a proxima esperada no replay */
+    static Journal format(BlockDevice device, Fat fat, int firstBlock) throws IOException {
+        Journal journal = new Journal(device, fat, firstBlock);
+        journal.sequence = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE / 2);
+        journal.writeHeader();
+        device.sync();
+        return journal;
+    }
+
+    /* abre o journal do volume e refaz as transacoes que ainda nao passaram por checkpoint;
+       devolve null se o volume foi formatado sem journal */
+    static Journal open(BlockDevice device, Fat fat, int firstBlock) throws IOException {
+        if (firstBlock <= 0 || fat.get(firstBlock) != Fat.RESERVADO) return null;
+
+        ByteBuffer header = ByteBuffer.allocate(20);
+        device.read(header, (long) firstBlock * device.blockSize());
+        header.flip();
+        if (header.getLong() != MAGIC) return null;
+        int version = header.getInt();
+        if (version < 1 || version > VERSION) throw new IOException("Versão do journal desconhecida: " + version);
+
+        Journal journal = new Journal(device, fat, firstBlock);
+        journal.version = version;
+        journal.sequence = header.getLong();
+        journal.replay();
+        return journal;
+    }
+
+    /* bloco de diretorio como as leituras devem ver, ou null se ele nao mudou desde o ultimo commit */
+    synchronized ByteBuffer view(int block) {
+        byte[] data = overlay.get(block);
+        return data == null ? null : ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    /* altera uma entrada de diretorio de 32 bytes; ela vai para o disco no proximo commit */
+    synchronized void writeDirEntry(int block, int index, ByteBuffer entry) throws IOException {
+        byte[] data = overlay.get(block);
+        if (data == null) {
+            data = new byte[blockSize];
+            device.readBlock(block, data);
+            overlay.put(block, data);
+        }
+        int offset = index * DirBlock.ENTRY_SIZE;
+        entry.get(data, offset, DirBlock.ENTRY_SIZE);
+        pendingBlocks.set(block);
+
+        out.writeByte(DIR_ENTRY);
+        out.writeInt(block);
+        out.writeShort(index);
+        out.write(data, offset, DirBlock.ENTRY_SIZE);
+    }
+
+    /* zera um bloco que passa a ser de diretorio */
+    synchronized void zeroBlock(int block) throws IOException {
+        //um bloco liberado e reaproveitado como diretorio no mesmo commit continua valendo
+        fat.reused(block);
+        overlay.put(block, new byte[blockSize]);
+        pendingBlocks.set(block);
+        out.writeByte(ZERO_BLOCK);
+        out.writeInt(block);
+    }
+
+    /* quantos bytes a transacao do proximo commit ainda pode crescer e caber no journal; quem agrupa varias operacoes
+       em um commit deve fazer o commit antes disso chegar perto de 0 */
+    synchronized int remaining() {
+        return capacity - TXN_OVERHEAD - records.size() - fat.pendingChanges() * FAT_RECORD;
+    }
+
+    /* bytes da area de transacoes */
+    int capacity() {
+        return capacity;
+    }
+
+    /* grava como uma transacao tudo que mudou desde o ultimo commit; devolve false se nao havia nada para gravar */
+    synchronized boolean commit() throws IOException {
+        revoke(fat.takeFreed());
+        int[] changes = fat.takeChanges();
+        if (changes.length == 0 && records.size() == 0) return false;
+
+        for (int i = 0; i < changes.length; i += 2) {
+            out.writeByte(FAT_ENTRY);
+            out.writeInt(changes[i]);
+            out.writeInt(fat.encode(changes[i + 1]));
+        }
+        byte[] body = records.toByteArray();
+        records.reset();
+
+        if (body.length + TXN_OVERHEAD > capacity) {
+            //a transacao nao cabe nem no journal vazio: os metadados vao direto para o lugar deles, sem atomicidade
+            //(uma unica operacao muito grande, como um unlink -r de milhares de arquivos)
+            oversized++;
+            System.err.println("Journal: commit de " + body.length + " bytes não cabe nos " + capacity
+                    + " bytes do journal; gravado sem atomicidade");
+            pendingBlocks.clear();
+            writeHome();
+            commitFat(changes);
+            checkpoint();
+            return true;
+        }
+        if (head + body.length + TXN_OVERHEAD > capacity) checkpoint();
+
+        ByteBuffer txn = ByteBuffer.allocate(body.length + TXN_OVERHEAD);
+        txn.putInt(TXN_MAGIC).putLong(sequence).putInt(body.length).put(body);
+        CRC32 crc = new CRC32();
+        crc.update(txn.array(), 4, TXN_HEADER - 4 + body.length);
+        txn.putInt((int) crc.getValue());
+        txn.flip();
+
+        //o unico fsync do commit: leva junto os dados dos arquivos que ja estavam no cache
+        device.write(txn, area + head);
+        device.sync();
+        head += body.length + TXN_OVERHEAD;
+        sequence++;
+        commits++;
+        logged.or(pendingBlocks);
+        pendingBlocks.clear();
+
+        //a transacao esta no disco, entao os blocos de diretorio podem ir para o lugar deles
+        writeHome();
+        commitFat(changes);
+        return true;
+    }
+
+    /* grava no lugar dela a FAT que esta no journal e esvazia o journal */
+    synchronized void checkpoint() throws IOException {
+        fat.write(device, committed, committedDirty);
+        committedDirty.clear();
+        device.sync();
+        head = 0;
+        logged.clear();
+        version = VERSION;
+        writeHeader();
+        device.sync();
+        checkpoints++;
+    }
+
+    //blocos liberados que tem registros no journal: o overlay deles é descartado, porque o bloco pode ja ser de um
+    //arquivo, e a revogacao vai na transacao para o replay nao gravar esses registros
+    private void revoke(int[] freed) throws IOException {
+        for (int block : freed) {
+            if (!logged.get(block) && !pendingBlocks.get(block)) continue;
+            overlay.remove(block);
+            logged.clear(block);
+            pendingBlocks.clear(block);
+            out.writeByte(REVOKE);
+            out.writeInt(block);
+        }
+    }
+
+    //os blocos do overlay vao para o lugar deles (sem fsync: o journal ja garante esses blocos)
+    private void writeHome() throws IOException {
+        for (var entry : overlay.entrySet()) {
+            device.writeBlock(entry.getKey(), entry.getValue());
+        }
+        overlay.clear();
+    }
+
+    //passa para a copia da FAT do journal os valores que acabaram de ser gravados
+    private void commitFat(int[] changes) {
+        for (int i = 0; i < changes.length; i += 2) {
+            committed[changes[i]] = changes[i + 1];
+            committedDirty.set(fat.blockOf(changes[i]));
+        }
+    }
+
+    //o cabecalho guarda a sequencia da primeira transacao depois do checkpoint; transacoes antigas que sobram
+    //na area tem sequencia menor e sao ignoradas no replay
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(20);
+        header.putLong(MAGIC).putInt(VERSION).putLong(sequence);
+        header.flip();
+        device.write(header, (long) firstBlock * blockSize);
+    }
+
+    //aplica as transacoes completas, em ordem, ate achar uma que nao e a proxima ou que esta corrompida
+    //as transacoes sao lidas antes, para saber onde cada bloco foi revogado pela ultima vez
+    private void replay() throws IOException {
+        ArrayList<ByteBuffer> transactions = new ArrayList<>();
+        int position = 0;
+        while (position + TXN_OVERHEAD <= capacity) {
+            ByteBuffer header = ByteBuffer.allocate(TXN_HEADER);
+            device.read(header, area + position);
+            header.flip();
+            if (header.getInt() != TXN_MAGIC || header.getLong() != sequence) break;
+            int length = header.getInt();
+            if (length < 0 || position + length + TXN_OVERHEAD > capacity) break;
+
+            ByteBuffer txn = ByteBuffer.allocate(TXN_HEADER + length + 4);
+            device.read(txn, area + position);
+            CRC32 crc = new CRC32();
+            crc.update(txn.array(), 4, TXN_HEADER - 4 + length);
+            if (txn.getInt(TXN_HEADER + length) != (int) crc.getValue()) break;
+
+            transactions.add(txn.position(TXN_HEADER).limit(TXN_HEADER + length).slice());
+            position += length + TXN_OVERHEAD;
+            sequence++;
+        }
+
+        //registro (contado desde a primeira transacao) da ultima revogacao de cada bloco
+        HashMap<Integer, Integer> revoked = new HashMap<>();
+        int record = 0;
+        for (ByteBuffer txn : transactions) {
+            record = apply(txn.duplicate(), record, revoked, false);
+        }
+        record = 0;
+        for (ByteBuffer txn : transactions) {
+            record = apply(txn, record, revoked, true);
+        }
+
+        //o volume volta ao estado do ultimo commit e o journal recomeca vazio, ja na versao atual
+        if (!transactions.isEmpty() || version != VERSION) {
+            fat.takeChanges();
+            fat.takeFreed();
+            checkpoint();
+        }
+    }
+
+    //percorre os registros de uma transacao, numerados a partir de record; sem write so anota as revogacoes,
+    //com write aplica os registros, menos os de blocos revogados depois deles. Devolve o numero do proximo registro
+    private int apply(ByteBuffer records, int record, HashMap<Integer, Integer> revoked, boolean write) throws IOException {
+        while (records.hasRemaining()) {
+            byte type = records.get();
+            int block = records.getInt();
+            boolean valid = record > revoked.getOrDefault(block, -1);
+            switch (type) {
+                case FAT_ENTRY:
+                    int value = fat.decode(records.getInt());
+                    if (!write) break;
+                    fat.set(block, value);
+                    committed[block] = value;
+                    committedDirty.set(fat.blockOf(block));
+                    break;
+                case DIR_ENTRY:
+                    int index = version == 1 ? records.get() & 0xff : records.getShort() & 0xffff;
+                    ByteBuffer entry = records.slice().limit(DirBlock.ENTRY_SIZE);
+                    records.position(records.position() + DirBlock.ENTRY_SIZE);
+                    if (write && valid) device.write(entry, (long) block * blockSize + (long) index * DirBlock.ENTRY_SIZE);
+                    break;
+                case ZERO_BLOCK:
+                    if (write && valid) device.writeBlock(block, new byte[blockSize]);
+                    break;
+                case REVOKE:
+                    if (!write) revoked.put(block, record);
+                    break;
+                default:
+                    throw new IOException("Registro desconhecido no journal: " + type);
+            }
+            record++;
+        }
+        return record;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Journal: " + commits + " commits, " + checkpoints + " checkpoints, " + head + "/" + capacity + " bytes em uso"
+                + (oversized > 0 ? ", " + oversized + " commits sem atomicidade" : "");
+    }
+}
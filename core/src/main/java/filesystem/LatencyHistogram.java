@@ -0,0 +1,73 @@
+package filesystem;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//histograma de latencias em nanossegundos com baldes log-lineares, como o HdrHistogram:
+//valores ate 15 ns tem um balde cada, e cada potencia de 2 acima disso e dividida em 16 baldes,
+//entao um percentil tem no maximo 1/16 de erro relativo
+//gravar e um incremento atomico, sem trava e sem alocar; as leituras sao aproximadas enquanto outras threads gravam
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    /* valores acima de 2^45 ns (quase 10 horas) caem no ultimo balde */
+    private static final int MAX_EXPONENT = 45;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT - SUB_BITS + 2) * SUB);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        total.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    public long count() {
+        return total.sum();
+    }
+
+    public long mean() {
+        long n = total.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /* menor valor que cobre a fracao p (0 a 1) das medidas, arredondado para cima ate o fim do balde */
+    public long percentile(double p) {
+        long n = total.sum();
+        if (n == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(p * n));
+        long seen = 0;
+        for (int b = 0; b < counts.length(); b++) {
+            seen += counts.get(b);
+            if (seen >= rank) return Math.min(upper(b), max());
+        }
+        return max();
+    }
+
+    //balde do valor: o expoente da potencia de 2 e os 4 bits seguintes ao bit mais alto
+    private int bucket(long value) {
+        if (value < SUB) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return counts.length() - 1;
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return (exponent - SUB_BITS + 1) * SUB + sub;
+    }
+
+    //maior valor que cai no balde b
+    private static long upper(int b) {
+        if (b < SUB) return b;
+        int exponent = b / SUB - 1 + SUB_BITS;
+        int sub = b % SUB;
+        return ((long) (SUB + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,62 @@
+package filesystem;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//travas de leitura/escrita do sistema de arquivos
+//cada diretorio tem a sua trava, pelo primeiro bloco dele; cada arquivo tambem, criada quando alguem pede a trava
+//e removida quando o ultimo que pediu devolve, entao dois arquivos nunca dividem uma trava. Quem segura uma trava
+//nunca espera por outra: o FileSystem so usa tryLock quando ja tem uma trava e, se nao conseguir, solta tudo e espera
+//sem segurar nada. As travas sao reentrantes e presas a thread: quem trava é quem solta
+public class LockTable {
+    //trava de um arquivo e quantos pediram ela e ainda nao devolveram
+    private static final class FileLock extends ReentrantReadWriteLock {
+        private static final long serialVersionUID = 1L;
+        int users;
+    }
+
+    //trava de um diretorio, marcada quando ele é excluido
+    private static final class DirLock extends ReentrantReadWriteLock {
+        private static final long serialVersionUID = 1L;
+        volatile boolean removed;
+    }
+
+    private final ConcurrentHashMap<Integer, DirLock> directories = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, FileLock> files = new ConcurrentHashMap<>();
+
+    /* trava do diretorio que comeca em firstBlock */
+    public ReentrantReadWriteLock directory(int firstBlock) {
+        return directories.computeIfAbsent(firstBlock, b -> new DirLock());
+    }
+
+    /* marca a trava de um diretorio excluido, enquanto quem exclui ainda segura ela; quem estava esperando por ela,
+       ou pega ela depois por um caminho antigo, percebe com isCurrent que o diretorio nao existe mais */
+    public void removeDirectory(int firstBlock) {
+        directories.computeIfAbsent(firstBlock, b -> new DirLock()).removed = true;
+    }
+
+    /* o bloco volta a ser o primeiro de um diretorio: a trava marcada do diretorio excluido que começava nele sai da tabela */
+    public void newDirectory(int firstBlock) {
+        directories.computeIfPresent(firstBlock, (b, lock) -> lock.removed ? null : lock);
+    }
+
+    /* lock ainda é a trava de um diretorio que existe e começa em firstBlock */
+    public boolean isCurrent(int firstBlock, ReentrantReadWriteLock lock) {
+        DirLock atual = directories.get(firstBlock);
+        return atual == lock && !atual.removed;
+    }
+
+    /* trava do arquivo que comeca em firstBlock; cada chamada deve ter um releaseFile depois que a trava for solta */
+    public ReentrantReadWriteLock file(int firstBlock) {
+        return files.compute(firstBlock, (b, lock) -> {
+            if (lock == null) lock = new FileLock();
+            lock.users++;
+            return lock;
+        });
+    }
+
+    /* devolve a trava pedida em file; a ultima devolucao remove a trava */
+    public void releaseFile(int firstBlock) {
+        files.computeIfPresent(firstBlock, (b, lock) -> --lock.users == 0 ? null : lock);
+    }
+}
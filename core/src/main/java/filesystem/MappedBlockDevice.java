@@ -0,0 +1,117 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+//dispositivo de blocos que mapeia o volume inteiro na memoria com FileChannel.map
+//leituras e escritas viram copias de memoria e blockView devolve uma fatia do mapeamento, sem syscall
+//um MappedByteBuffer e indexado por int, entao volumes grandes sao mapeados em pedacos de 1 GB;
+//o pedaco e multiplo de qualquer tamanho de bloco, entao um bloco nunca fica dividido entre dois pedacos
+//o conteudo so e garantido no disco depois de sync (force) ou close
+public class MappedBlockDevice implements BlockDevice {
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final int blockSize;
+    private final long size;
+
+    public MappedBlockDevice(String path, int blockSize, long blocks) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+        this.size = blocks * blockSize;
+
+        //mapear alem do fim do arquivo aumenta o arquivo ate o tamanho do volume
+        this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >> CHUNK_SHIFT)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(CHUNK_SIZE, size - start));
+        }
+    }
+
+    @Override
+    public int blockSize() {
+        return blockSize;
+    }
+
+    @Override
+    public void readBlock(int block, byte[] record) throws IOException {
+        long position = checked((long) block * blockSize, blockSize);
+        chunk(position).get(offset(position), record, 0, blockSize);
+    }
+
+    @Override
+    public void writeBlock(int block, byte[] record) throws IOException {
+        long position = checked((long) block * blockSize, blockSize);
+        chunk(position).put(offset(position), record, 0, blockSize);
+    }
+
+    @Override
+    public void read(ByteBuffer dst, long position) throws IOException {
+        checked(position, dst.remaining());
+        while (dst.hasRemaining()) {
+            int length = part(position, dst.remaining());
+            dst.put(chunk(position).slice(offset(position), length));
+            position += length;
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer src, long position) throws IOException {
+        checked(position, src.remaining());
+        while (src.hasRemaining()) {
+            int length = part(position, src.remaining());
+            ByteBuffer part = src.duplicate();
+            part.limit(part.position() + length);
+            chunk(position).slice(offset(position), length).put(part);
+            src.position(src.position() + length);
+            position += length;
+        }
+    }
+
+    @Override
+    public ByteBuffer blockView(int block) {
+        long position = checked((long) block * blockSize, blockSize);
+        return chunk(position).slice(offset(position), blockSize).asReadOnlyBuffer();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    private MappedByteBuffer chunk(long position) {
+        return chunks[(int) (position >> CHUNK_SHIFT)];
+    }
+
+    private static int offset(long position) {
+        return (int) (position & (CHUNK_SIZE - 1));
+    }
+
+    //quantos dos length bytes a partir de position ficam no mesmo pedaco
+    private static int part(long position, int length) {
+        return (int) Math.min(length, CHUNK_SIZE - offset(position));
+    }
+
+    //confere se a regiao pedida esta dentro do volume
+    private long checked(long position, int length) {
+        if (position < 0 || position + length > size) {
+            throw new IndexOutOfBoundsException("Posição " + position + " fora do volume");
+        }
+        return position;
+    }
+}
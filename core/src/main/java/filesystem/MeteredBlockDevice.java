@@ -0,0 +1,89 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//conta as leituras e escritas que o sistema de arquivos pede ao dispositivo (ao cache, quando ha um) e os bytes de cada uma
+//cada chamada conta uma vez, seja de um bloco ou de uma sequencia de blocos; o resto so passa adiante
+public class MeteredBlockDevice implements BlockDevice {
+    private final BlockDevice device;
+    private final Metrics metrics;
+
+    public MeteredBlockDevice(BlockDevice device, Metrics metrics) {
+        this.device = device;
+        this.metrics = metrics;
+    }
+
+    /* dispositivo que as chamadas contadas usam */
+    BlockDevice unwrap() {
+        return device;
+    }
+
+    @Override
+    public int blockSize() {
+        return device.blockSize();
+    }
+
+    @Override
+    public void readBlock(int block, byte[] record) throws IOException {
+        device.readBlock(block, record);
+        countRead(record.length);
+    }
+
+    @Override
+    public void writeBlock(int block, byte[] record) throws IOException {
+        device.writeBlock(block, record);
+        countWrite(record.length);
+    }
+
+    @Override
+    public void read(ByteBuffer dst, long position) throws IOException {
+        int length = dst.remaining();
+        device.read(dst, position);
+        countRead(length);
+    }
+
+    @Override
+    public void write(ByteBuffer src, long position) throws IOException {
+        int length = src.remaining();
+        device.write(src, position);
+        countWrite(length);
+    }
+
+    @Override
+    public ByteBuffer blockView(int block) throws IOException {
+        ByteBuffer view = device.blockView(block);
+        countRead(view.remaining());
+        return view;
+    }
+
+    @Override
+    public boolean erase(long size) throws IOException {
+        return device.erase(size);
+    }
+
+    @Override
+    public void prefetch(int block) {
+        device.prefetch(block);
+    }
+
+    @Override
+    public void sync() throws IOException {
+        device.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        device.close();
+    }
+
+    private void countRead(int bytes) {
+        metrics.blockReads.increment();
+        metrics.bytesRead.add(bytes);
+    }
+
+    private void countWrite(int bytes) {
+        metrics.blockWrites.increment();
+        metrics.bytesWritten.add(bytes);
+    }
+}
@@ -0,0 +1,106 @@
+package filesystem;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+//contadores de E/S e latencia de cada comando de um sistema de arquivos montado
+//os contadores sao LongAdder e os histogramas so fazem incrementos atomicos, entao gravar nao trava nenhuma operacao;
+//os valores valem desde a montagem e continuam depois de um init
+public class Metrics implements MetricsMXBean {
+    /* nome do MBean registrado pelo main */
+    static final String OBJECT_NAME = "filesystem:type=Metrics";
+
+    final LongAdder blockReads = new LongAdder();
+    final LongAdder blockWrites = new LongAdder();
+    final LongAdder bytesRead = new LongAdder();
+    final LongAdder bytesWritten = new LongAdder();
+    final LongAdder fatFlushes = new LongAdder();
+    final LongAdder fatBlocksWritten = new LongAdder();
+
+    private final ConcurrentHashMap<String, LatencyHistogram> operations = new ConcurrentHashMap<>();
+
+    /* grava a duracao de um comando */
+    public void record(String operation, long nanos) {
+        LatencyHistogram histogram = operations.get(operation);
+        if (histogram == null) histogram = operations.computeIfAbsent(operation, k -> new LatencyHistogram());
+        histogram.record(nanos);
+    }
+
+    /* registra as metricas no servidor de MBeans da JVM, para o jconsole e outras ferramentas JMX */
+    public void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public long getBlockReads() {
+        return blockReads.sum();
+    }
+
+    @Override
+    public long getBlockWrites() {
+        return blockWrites.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getFatFlushes() {
+        return fatFlushes.sum();
+    }
+
+    @Override
+    public long getFatBlocksWritten() {
+        return fatBlocksWritten.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        operations.forEach((op, h) -> counts.put(op, h.count()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getOperationP99Micros() {
+        Map<String, Long> p99 = new TreeMap<>();
+        operations.forEach((op, h) -> p99.put(op, h.percentile(0.99) / 1000));
+        return p99;
+    }
+
+    @Override
+    public String report() {
+        return toString();
+    }
+
+    //uma linha por comando, com as latencias em microssegundos, e depois os contadores de E/S
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(operations).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            s.append(String.format("%-10s %8d chamadas, média %d us, p50 %d us, p99 %d us, máx %d us%n", e.getKey(), h.count(),
+                    h.mean() / 1000, h.percentile(0.5) / 1000, h.percentile(0.99) / 1000, h.max() / 1000));
+        }
+        s.append("Blocos: ").append(getBlockReads()).append(" leituras (").append(getBytesRead()).append(" bytes), ")
+                .append(getBlockWrites()).append(" escritas (").append(getBytesWritten()).append(" bytes)\n");
+        s.append("FAT: ").append(getFatFlushes()).append(" flushes, ").append(getFatBlocksWritten()).append(" blocos escritos");
+        return s.toString();
+    }
+}
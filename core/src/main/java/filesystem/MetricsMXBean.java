@@ -0,0 +1,27 @@
+package filesystem;
+
+import java.util.Map;
+
+//metricas do sistema de arquivos expostas por JMX, com o nome filesystem:type=Metrics
+public interface MetricsMXBean {
+    long getBlockReads();
+
+    long getBlockWrites();
+
+    long getBytesRead();
+
+    long getBytesWritten();
+
+    long getFatFlushes();
+
+    long getFatBlocksWritten();
+
+    /* quantas vezes cada comando foi executado */
+    Map<String, Long> getOperationCounts();
+
+    /* percentil 99 da latencia de cada comando, em microssegundos */
+    Map<String, Long> getOperationP99Micros();
+
+    /* o mesmo texto do comando stats */
+    String report();
+}
@@ -0,0 +1,167 @@
+package filesystem;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.IntFunction;
+
+//resolve caminhos como root/a/b para a entrada de diretorio correspondente
+//os resultados (inclusive caminhos que nao existem) ficam em um cache LRU limitado, entao um caminho
+//usado de novo e resolvido sem ler nenhum bloco; mkdir, create e unlink atualizam o cache do caminho que alteraram
+//cada nome e procurado com a trava de leitura do diretorio pai, e quem cria ou remove o nome segura a trava de escrita,
+//entao um resultado antigo nunca entra no cache depois da atualizacao feita por quem alterou o diretorio
+public class PathResolver {
+    private final int rootBlock;
+    private final IntFunction<Directory> directories;
+    private final IntFunction<DirBlock> dirReader;
+    private final IntFunction<ReadWriteLock> locks;
+    private final int capacity;
+
+    /* caminho normalizado -> entrada resolvida, em ordem de acesso */
+    private final LinkedHashMap<String, Dentry> cache;
+
+    private long hits;
+    private long misses;
+
+    public PathResolver(int rootBlock, IntFunction<Directory> directories, IntFunction<DirBlock> dirReader,
+                        IntFunction<ReadWriteLock> locks, int capacity) {
+        this.rootBlock = rootBlock;
+        this.directories = directories;
+        this.dirReader = dirReader;
+        this.locks = locks;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+    }
+
+    /* resolve o caminho; devolve uma Dentry negativa se ele nao existir */
+    public Dentry resolve(String path) {
+        return lookup(normalize(path));
+    }
+
+    /* registra uma entrada recem criada, substituindo a entrada negativa que possa existir */
+    public void created(Dentry dentry) {
+        put(dentry.path, dentry);
+    }
+
+    /* tira do cache o caminho e tudo que estiver abaixo dele */
+    public void invalidate(String path) {
+        String key = normalize(path);
+        String prefix = key + "/";
+        synchronized (cache) {
+            cache.keySet().removeIf(k -> k.equals(key) || k.startsWith(prefix));
+        }
+    }
+
+    //resolve recursivamente: o pai vem do cache sempre que possivel, e o nome e achado pelo indice do diretorio,
+    //entao so o bloco onde a entrada fica e lido
+    private Dentry lookup(String path) {
+        Dentry dentry = cached(path);
+        if (dentry != null) return dentry;
+
+        int cut = path.lastIndexOf('/');
+        if (cut < 0) {
+            dentry = root(path);
+            put(path, dentry);
+            return dentry;
+        }
+
+        String parentPath = path.substring(0, cut);
+        while (true) {
+            Dentry parent = lookup(parentPath);
+            if (!parent.exists() || parent.entry.attributes != DirEntry.DIRETORIO) {
+                //sem a trava do pai, o resultado negativo nao vai para o cache
+                return Dentry.negative(path);
+            }
+
+            Lock lock = locks.apply(parent.entry.first_block).readLock();
+            lock.lock();
+            try {
+                //o pai pode ter sido removido antes da trava; quem remove tira ele do cache segurando a trava dele
+                if (peek(parentPath) != parent) continue;
+
+                Directory dir = directories.apply(parent.entry.first_block);
+                int slot = dir.find(path.substring(cut + 1));
+                if (slot < 0) {
+                    dentry = Dentry.negative(path);
+                } else {
+                    int block = dir.blockOf(slot);
+                    int i = dir.indexOf(slot);
+                    dentry = new Dentry(path, dir.firstBlock, block, i, dirReader.apply(block).entry(i).toDirEntry());
+                }
+                put(path, dentry);
+                return dentry;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Dentry root(String path) {
+        DirEntry entry = new DirEntry();
+        entry.attributes = DirEntry.DIRETORIO;
+        entry.first_block = rootBlock;
+        return new Dentry(path, -1, -1, -1, entry);
+    }
+
+    //busca no cache contando acerto ou falta
+    private Dentry cached(String path) {
+        synchronized (cache) {
+            Dentry dentry = cache.get(path);
+            if (dentry != null) hits++;
+            else misses++;
+            return dentry;
+        }
+    }
+
+    //busca no cache sem contar acerto ou falta
+    private Dentry peek(String path) {
+        synchronized (cache) {
+            return cache.get(path);
+        }
+    }
+
+    private void put(String path, Dentry dentry) {
+        synchronized (cache) {
+            if (cache.size() >= capacity && !cache.containsKey(path)) {
+                Iterator<String> it = cache.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+            cache.put(path, dentry);
+        }
+    }
+
+    /* junta os nomes do caminho com uma unica barra; o primeiro nome e sempre a root */
+    static String normalize(String path) {
+        ArrayList<String> names = new ArrayList<>();
+        for (String name : path.split("/")) {
+            if (!name.isEmpty()) names.add(name);
+        }
+
+        StringBuilder normalized = new StringBuilder("root");
+        for (int i = 1; i < names.size(); i++) {
+            normalized.append('/').append(names.get(i));
+        }
+        return normalized.toString();
+    }
+
+    /* caminho do diretorio pai, ou null para a root */
+    static String parentOf(String path) {
+        int cut = path.lastIndexOf('/');
+        return cut < 0 ? null : path.substring(0, cut);
+    }
+
+    /* ultimo nome do caminho */
+    static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public String toString() {
+        synchronized (cache) {
+            return "Caminhos: " + hits + " acertos, " + misses + " faltas, " + cache.size() + "/" + capacity + " entradas";
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//geometria do volume, gravada pelo init no inicio do bloco 0: tamanho do bloco, quantidade de blocos,
+//largura das entradas da FAT e onde ficam a FAT, a root e o journal
+//volumes de ate 0x7ffd blocos usam uma FAT de 16 bits; acima disso a FAT e os ponteiros de bloco das entradas
+//de diretorio tem 32 bits. Volumes formatados antes do superbloco nao tem o magic e sao montados com a geometria
+//antiga: blocos de 1024 bytes, 2048 blocos, FAT de 16 bits nos blocos 0 a 3 e root no bloco 4
+public final class Superblock {
+    private static final long MAGIC = 0x4653535550455231L; //"FSSUPER1"
+    private static final int VERSION = 1;
+    /* bytes usados no inicio do bloco 0 */
+    private static final int SIZE = 40;
+
+    /* limites da geometria aceitos pelo init */
+    static final int MIN_BLOCK_SIZE = 1024;
+    static final int MAX_BLOCK_SIZE = 65536;
+    static final int MIN_BLOCKS = 128;
+    static final int MAX_BLOCKS = 1 << 28;
+    /* maior quantidade de blocos que cabe em uma FAT de 16 bits, abaixo dos marcadores 0x7ffe e 0x7fff */
+    static final int MAX_BLOCKS_16 = 0x7ffe;
+
+    /* geometria dos volumes sem superbloco */
+    static final Superblock LEGACY = new Superblock(1024, 2048, 2, 0, 4, 2048 - Journal.BLOCKS, true);
+
+    final int blockSize;
+    final int blocks;
+    /* bytes por entrada da FAT e por ponteiro de bloco nas entradas de diretorio: 2 ou 4 */
+    final int fatWidth;
+    final int fatBlock;
+    final int fatBlocks;
+    final int rootBlock;
+    final int journalBlock;
+    /* volume sem superbloco, com a FAT no bloco 0 */
+    final boolean legacy;
+
+    private Superblock(int blockSize, int blocks, int fatWidth, int fatBlock, int fatBlocks, int journalBlock, boolean legacy) {
+        this.blockSize = blockSize;
+        this.blocks = blocks;
+        this.fatWidth = fatWidth;
+        this.fatBlock = fatBlock;
+        this.fatBlocks = fatBlocks;
+        this.rootBlock = fatBlock + fatBlocks;
+        this.journalBlock = journalBlock;
+        this.legacy = legacy;
+    }
+
+    /* geometria de um volume novo: superbloco no bloco 0, FAT logo depois, root depois da FAT e journal no fim */
+    static Superblock create(int blockSize, int blocks) throws FileSystemException {
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE || Integer.bitCount(blockSize) != 1) {
+            throw new FileSystemException("O tamanho do bloco deve ser uma potência de 2 entre " + MIN_BLOCK_SIZE + " e " + MAX_BLOCK_SIZE + " bytes");
+        }
+        if (blocks < MIN_BLOCKS || blocks > MAX_BLOCKS) {
+            throw new FileSystemException("O volume deve ter entre " + MIN_BLOCKS + " e " + MAX_BLOCKS + " blocos");
+        }
+
+        int fatWidth = blocks <= MAX_BLOCKS_16 ? 2 : 4;
+        int fatBlocks = (int) (((long) blocks * fatWidth + blockSize - 1) / blockSize);
+        Superblock volume = new Superblock(blockSize, blocks, fatWidth, 1, fatBlocks, blocks - Journal.BLOCKS, false);
+        if (volume.rootBlock >= volume.journalBlock) {
+            throw new FileSystemException("O volume é pequeno demais para a FAT e o journal");
+        }
+        return volume;
+    }
+
+    /* le o superbloco do dispositivo; um volume sem superbloco (antigo ou nunca formatado) tem a geometria antiga */
+    static Superblock read(BlockDevice device) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        device.read(buffer, 0);
+        buffer.flip();
+        return decode(buffer);
+    }
+
+    /* le o superbloco direto do arquivo do volume, antes de abrir o dispositivo com o tamanho de bloco certo */
+    static Superblock probe(Path path) throws IOException {
+        if (!Files.exists(path)) return LEGACY;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+            while (buffer.hasRemaining()) {
+                //arquivo menor que o superbloco: volume nunca formatado
+                if (channel.read(buffer, buffer.position()) < 0) return LEGACY;
+            }
+            buffer.flip();
+            return decode(buffer);
+        }
+    }
+
+    /* grava o superbloco no bloco 0 inteiro */
+    void write(BlockDevice device) throws IOException {
+        if (legacy) throw new IOException("Volumes antigos não têm superbloco");
+        ByteBuffer block = ByteBuffer.allocate(blockSize);
+        block.putLong(MAGIC).putInt(VERSION).putInt(blockSize).putInt(blocks).putInt(fatWidth)
+                .putInt(fatBlock).putInt(fatBlocks).putInt(journalBlock);
+        block.clear();
+        device.write(block, 0);
+    }
+
+    /* quantos bytes do nome cabem em uma entrada de diretorio de 32 bytes */
+    int nameSize() {
+        return DirBlock.nameSize(fatWidth);
+    }
+
+    /* tamanho do volume em bytes */
+    long bytes() {
+        return (long) blocks * blockSize;
+    }
+
+    private static Superblock decode(ByteBuffer buffer) throws IOException {
+        if (buffer.getLong() != MAGIC) return LEGACY;
+        int version = buffer.getInt();
+        if (version != VERSION) throw new IOException("Versão do superbloco desconhecida: " + version);
+
+        int blockSize = buffer.getInt();
+        int blocks = buffer.getInt();
+        int fatWidth = buffer.getInt();
+        int fatBlock = buffer.getInt();
+        int fatBlocks = buffer.getInt();
+        int journalBlock = buffer.getInt();
+
+        Superblock volume;
+        try {
+            volume = create(blockSize, blocks);
+        } catch (FileSystemException e) {
+            throw new IOException("Superbloco inválido: " + e.getMessage());
+        }
+        if (volume.fatWidth != fatWidth || volume.fatBlock != fatBlock || volume.fatBlocks != fatBlocks || volume.journalBlock != journalBlock) {
+            throw new IOException("Superbloco inválido: a geometria não confere");
+        }
+        return volume;
+    }
+
+    @Override
+    public String toString() {
+        return "Volume: " + blocks + " blocos de " + blockSize + " bytes, FAT de " + (fatWidth * 8) + " bits"
+                + (legacy ? " (sem superbloco)" : "");
+    }
+}
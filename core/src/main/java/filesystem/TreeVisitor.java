@@ -0,0 +1,16 @@
+package filesystem;
+
+import java.util.List;
+
+//recebe o que a caminhada em uma arvore de diretorios (FileSystem.walk) encontra, assim que encontra
+//os subdiretorios sao percorridos em paralelo, entao os metodos sao chamados de varias threads ao mesmo tempo
+//e os diretorios chegam em qualquer ordem
+public interface TreeVisitor {
+    /* entradas de um diretorio, lidas de uma vez com a trava dele; names e entries estao na mesma ordem */
+    default void directory(String path, List<String> names, List<DirEntry> entries) {
+    }
+
+    /* fim de um diretorio e de tudo que esta dentro dele, com a soma dos sizes dos arquivos */
+    default void finished(String path, long bytes) {
+    }
+}
@@ -0,0 +1,111 @@
+package filesystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//arquivos comprimidos em chunks: o conteudo volta igual atravessando o limite entre chunks, depois de um pwrite
+//que faz um chunk do meio crescer por cima dos seguintes e depois de um truncate que corta um chunk ao meio
+class CompressionTest {
+    private static final int CHUNK = CompressedFileHandle.CHUNK;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripAcrossChunkBoundary() throws Exception {
+        String volume = dir.resolve("limite.dat").toString();
+        FileSystem fs = compressedVolume(volume);
+        String conteudo = log(CHUNK + 500);
+        fs.createArchive("root/log", conteudo);
+
+        assertEquals(conteudo + "\n", read(fs, "root/log.txt"));
+        assertEquals(conteudo.substring(CHUNK - 10, CHUNK + 10), fs.readAt("root/log.txt", CHUNK - 10, 20));
+        fs.close();
+
+        fs = new FileSystem(new FileChannelBlockDevice(volume, 1024));
+        assertEquals(conteudo + "\n", read(fs, "root/log.txt"));
+        fs.close();
+    }
+
+    @Test
+    void pwriteInTheMiddle() throws Exception {
+        String volume = dir.resolve("meio.dat").toString();
+        FileSystem fs = compressedVolume(volume);
+        String conteudo = log(4 * CHUNK + 100);
+        fs.createArchive("root/log", conteudo);
+
+        //texto aleatorio quase nao comprime: os chunks 1 e 2 crescem e passam por cima dos chunks seguintes
+        String ruido = noise(CHUNK);
+        int posicao = CHUNK + 100;
+        fs.writeAt("root/log.txt", posicao, ruido);
+        String esperado = conteudo.substring(0, posicao) + ruido + conteudo.substring(posicao + ruido.length());
+
+        assertEquals(esperado + "\n", read(fs, "root/log.txt"));
+        fs.close();
+
+        fs = new FileSystem(new FileChannelBlockDevice(volume, 1024));
+        assertEquals(esperado + "\n", read(fs, "root/log.txt"));
+        fs.close();
+    }
+
+    @Test
+    void truncateInsideChunk() throws Exception {
+        String volume = dir.resolve("corte.dat").toString();
+        FileSystem fs = compressedVolume(volume);
+        String conteudo = log(3 * CHUNK);
+        fs.createArchive("root/log", conteudo);
+
+        fs.truncate("root/log.txt", CHUNK + 700);
+        String esperado = conteudo.substring(0, CHUNK + 700);
+        assertEquals(esperado + "\n", read(fs, "root/log.txt"));
+
+        //o que vem depois do corte é escrito de novo, sem sobras do conteudo antigo
+        fs.append("root/log.txt", "fim");
+        assertEquals(esperado + "fim\n", read(fs, "root/log.txt"));
+        fs.close();
+
+        fs = new FileSystem(new FileChannelBlockDevice(volume, 1024));
+        assertEquals(esperado + "fim\n", read(fs, "root/log.txt"));
+        fs.close();
+    }
+
+    private static FileSystem compressedVolume(String volume) throws IOException, FileSystemException {
+        FileSystem fs = new FileSystem(new FileChannelBlockDevice(volume, 1024));
+        fs.init(1024, 1024);
+        fs.setCompressedFiles(true);
+        return fs;
+    }
+
+    //linhas de log parecidas entre si, que comprimem bem
+    private static String log(int length) {
+        Random random = new Random(1);
+        StringBuilder log = new StringBuilder();
+        while (log.length() < length) {
+            log.append("2026-10-17 12:").append(random.nextInt(60)).append(" INFO servico ").append(random.nextInt(100)).append(" ok\n");
+        }
+        return log.substring(0, length);
+    }
+
+    private static String noise(int length) {
+        Random random = new Random(2);
+        StringBuilder noise = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            noise.append((char) ('!' + random.nextInt(94)));
+        }
+        return noise.toString();
+    }
+
+    private static String read(FileSystem fs, String path) throws FileSystemException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fs.readArchive(path, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
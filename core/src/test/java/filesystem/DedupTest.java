@@ -0,0 +1,105 @@
+package filesystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//blocos compartilhados pela tabela de dedup: so voltam para a FAT quando o ultimo arquivo solta, nunca sao escritos
+//por cima, e as referencias e impressoes digitais continuam valendo depois de montar o volume de novo
+class DedupTest {
+    //4 blocos, cada um com um conteudo diferente
+    private static final String CONTEUDO = "a".repeat(1024) + "b".repeat(1024) + "c".repeat(1024) + "d".repeat(1024);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sharedBlockSurvivesUnlink() throws Exception {
+        FileSystem fs = dedupVolume("unlink.dat");
+        fs.createArchive("root/a", CONTEUDO);
+        fs.createArchive("root/b", CONTEUDO);
+        fs.unlink("root/a.txt");
+        //blocos liberados por engano seriam reaproveitados pelos arquivos que enchem o volume
+        fill(fs);
+
+        assertEquals(CONTEUDO + "\n", read(fs, "root/b.txt"));
+        fs.close();
+    }
+
+    @Test
+    void overwriteCopiesSharedBlock() throws Exception {
+        FileSystem fs = dedupVolume("escrita.dat");
+        fs.createArchive("root/a", CONTEUDO);
+        fs.createArchive("root/b", CONTEUDO);
+        fs.writeAt("root/a.txt", 1030, "XYZ");
+
+        assertEquals(CONTEUDO + "\n", read(fs, "root/b.txt"));
+        assertEquals(CONTEUDO.substring(0, 1030) + "XYZ" + CONTEUDO.substring(1033) + "\n", read(fs, "root/a.txt"));
+        fs.close();
+    }
+
+    @Test
+    void referencesSurviveRemount() throws Exception {
+        String volume = dir.resolve("refs.dat").toString();
+        FileSystem fs = dedupVolume("refs.dat");
+        fs.createArchive("root/a", CONTEUDO);
+        fs.createArchive("root/b", CONTEUDO);
+        fs.close();
+
+        fs = new FileSystem(new FileChannelBlockDevice(volume, 1024));
+        fs.unlink("root/a.txt");
+        fill(fs);
+
+        assertEquals(CONTEUDO + "\n", read(fs, "root/b.txt"));
+        fs.close();
+    }
+
+    @Test
+    void fingerprintsSurviveRemount() throws Exception {
+        String volume = dir.resolve("digitais.dat").toString();
+        FileSystem fs = dedupVolume("digitais.dat");
+        fs.createArchive("root/a", CONTEUDO);
+        fs.close();
+
+        fs = new FileSystem(new FileChannelBlockDevice(volume, 1024));
+        fill(fs);
+        fs.unlink("root/cheio0.txt");
+        //sobra um bloco, que é a lista de extents do arquivo novo: os 4 blocos de dados tem que ser os do primeiro
+        fs.setDedupFiles(true);
+        fs.createArchive("root/b", CONTEUDO);
+
+        assertEquals(CONTEUDO + "\n", read(fs, "root/b.txt"));
+        fs.close();
+    }
+
+    private FileSystem dedupVolume(String name) throws IOException, FileSystemException {
+        FileSystem fs = new FileSystem(new FileChannelBlockDevice(dir.resolve(name).toString(), 1024));
+        fs.init(1024, 256);
+        fs.setDedupFiles(true);
+        return fs;
+    }
+
+    //enche o volume com arquivos de um bloco, fora do modo dedup
+    private static void fill(FileSystem fs) {
+        fs.setDedupFiles(false);
+        try {
+            for (int i = 0; ; i++) {
+                fs.createArchive("root/cheio" + i, "x");
+            }
+        } catch (FileSystemException cheio) {
+            //a FAT ou a root ficaram cheias
+        }
+    }
+
+    private static String read(FileSystem fs, String path) throws FileSystemException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fs.readArchive(path, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
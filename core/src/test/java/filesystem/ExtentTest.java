@@ -0,0 +1,186 @@
+package filesystem;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+//listas de extents: sequencias seguidas viram um extent so, o truncate corta e divide extents, uma alocacao
+//fragmentada vira varios extents, e a lista continua a mesma depois de montar o volume de novo
+class ExtentTest {
+    private static final int BLOCK = 1024;
+
+    @TempDir
+    Path dir;
+
+    private Fat fat;
+    /* blocos da lista, guardados em memoria em vez do volume */
+    private final Map<Integer, byte[]> listas = new HashMap<>();
+    private final ExtentList.Metadata metadata = new ExtentList.Metadata() {
+        @Override
+        public ByteBuffer read(int block) {
+            return ByteBuffer.wrap(listas.computeIfAbsent(block, b -> new byte[BLOCK]));
+        }
+
+        @Override
+        public void zero(int block) {
+            listas.put(block, new byte[BLOCK]);
+        }
+
+        @Override
+        public void write(int block, int index, ByteBuffer slot) {
+            slot.get(slot.position(), read(block).array(), index * slot.remaining(), slot.remaining());
+        }
+    };
+
+    @BeforeEach
+    void volume() throws Exception {
+        Superblock volume = Superblock.create(BLOCK, 1024);
+        fat = new Fat(volume, new Metrics());
+        //como depois de formatar: todos os blocos de dados livres
+        for (int b = volume.rootBlock + 1; b < volume.journalBlock; b++) {
+            fat.set(b, 0);
+        }
+    }
+
+    @Test
+    void adjacentRunsMerge() throws Exception {
+        ExtentList list = newList();
+        list.grow(3);
+        list.grow(6);
+
+        //as duas alocacoes foram seguidas no volume, entao o arquivo inteiro é uma sequencia so
+        assertEquals(6, list.blocks());
+        assertEquals(6, list.run(0, 100));
+        for (int i = 0; i < 6; i++) {
+            assertEquals(list.block(0) + i, list.block(i));
+            assertEquals(Fat.FIM_DE_ARQUIVO, fat.get(list.block(i)));
+        }
+    }
+
+    @Test
+    void truncateSplitsAndTrims() throws Exception {
+        ExtentList list = newList();
+        list.grow(6);
+        int start = list.block(0);
+        int outro = fat.allocate();
+        fat.set(outro, Fat.FIM_DE_ARQUIVO);
+
+        //o bloco 2 trocado divide o extent em tres: [0, 2), [2] e [3, 6)
+        list.map(2, outro);
+        assertEquals(2, list.run(0, 100));
+        assertEquals(outro, list.block(2));
+        assertEquals(1, list.run(2, 100));
+        assertEquals(3, list.run(3, 100));
+
+        //cortar no meio do ultimo extent solta so o fim dele
+        list.shrink(4);
+        assertEquals(4, list.blocks());
+        assertEquals(1, list.run(3, 100));
+        assertEquals(Fat.FIM_DE_ARQUIVO, fat.get(start + 3));
+        assertEquals(0, fat.get(start + 4));
+        assertEquals(0, fat.get(start + 5));
+
+        //cortar no limite entre extents solta os extents inteiros depois dele
+        list.shrink(2);
+        assertEquals(2, list.blocks());
+        assertEquals(2, list.run(0, 100));
+        assertEquals(0, fat.get(outro));
+        assertEquals(0, fat.get(start + 3));
+        assertEquals(Fat.FIM_DE_ARQUIVO, fat.get(start + 1));
+    }
+
+    @Test
+    void fragmentedAllocationUsesSeveralExtents() throws Exception {
+        int first = newListBlock();
+        ExtentList list = ExtentList.create(fat, metadata, BLOCK, first);
+        //ocupa o volume inteiro e solta um bloco sim, um nao: nao sobra nenhuma sequencia de dois blocos
+        int[] todos = fat.allocate(fat.freeBlocks());
+        for (int b : todos) fat.set(b, Fat.FIM_DE_ARQUIVO);
+        for (int i = 0; i < 302; i += 2) fat.set(todos[i], 0);
+
+        list.grow(150);
+        assertEquals(150, list.blocks());
+        for (int i = 0; i < 150; i++) {
+            assertEquals(1, list.run(i, 100));
+        }
+
+        //150 extents nao cabem em um bloco da lista: ela ganha um segundo bloco, encadeado na FAT
+        list.store();
+        assertNotEquals(Fat.FIM_DE_ARQUIVO, fat.get(first));
+        ExtentList lida = ExtentList.load(fat, metadata, BLOCK, first);
+        assertEquals(150, lida.blocks());
+        for (int i = 0; i < 150; i++) {
+            assertEquals(list.block(i), lida.block(i));
+        }
+
+        //apagar solta os blocos de dados e os dois blocos da lista
+        lida.delete();
+        assertEquals(152, fat.freeBlocks());
+    }
+
+    @Test
+    void extentsSurviveRemount() throws Exception {
+        String volume = dir.resolve("extents.dat").toString();
+        FileSystem fs = new FileSystem(new FileChannelBlockDevice(volume, BLOCK));
+        fs.init(BLOCK, 1024);
+        fs.setExtentFiles(true);
+        fs.createArchive("root/a", "");
+        fs.createArchive("root/b", "");
+        //appends alternados intercalam os blocos dos dois arquivos, entao cada um fica com um extent por bloco
+        StringBuilder a = new StringBuilder();
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            String blocoA = String.valueOf((char) ('a' + i % 26)).repeat(BLOCK);
+            String blocoB = String.valueOf((char) ('A' + i % 26)).repeat(BLOCK);
+            fs.append("root/a.txt", blocoA);
+            fs.append("root/b.txt", blocoB);
+            a.append(blocoA);
+            b.append(blocoB);
+        }
+        fs.close();
+
+        fs = new FileSystem(new FileChannelBlockDevice(volume, BLOCK));
+        assertEquals(a + "\n", read(fs, "root/a.txt"));
+        assertEquals(b + "\n", read(fs, "root/b.txt"));
+
+        //os blocos de b continuam ocupados: os que a soltar sao reaproveitados sem tocar em b
+        fs.unlink("root/a.txt");
+        fs.setExtentFiles(false);
+        try {
+            for (int i = 0; ; i++) {
+                fs.createArchive("root/cheio" + i, "x");
+            }
+        } catch (FileSystemException cheio) {
+            //a FAT ou a root ficaram cheias
+        }
+        assertEquals(b + "\n", read(fs, "root/b.txt"));
+        fs.close();
+    }
+
+    //lista vazia em um bloco reservado, como a de um arquivo novo
+    private ExtentList newList() {
+        return ExtentList.create(fat, metadata, BLOCK, newListBlock());
+    }
+
+    private int newListBlock() {
+        int first = fat.allocate();
+        fat.set(first, Fat.FIM_DE_ARQUIVO);
+        return first;
+    }
+
+    private static String read(FileSystem fs, String path) throws FileSystemException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fs.readArchive(path, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
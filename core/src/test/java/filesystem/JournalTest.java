@@ -0,0 +1,91 @@
+package filesystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+//um bloco de diretorio liberado e reaproveitado como bloco de dados nao pode ser sobrescrito pelo journal,
+//nem no commit nem no replay depois de uma queda
+class JournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void groupCommitKeepsReusedBlock() throws Exception {
+        String volume = dir.resolve("grupo.dat").toString();
+        FileSystem fs = fullVolume(volume);
+        fs.mkdir("root/x");
+        fs.unlink("root/x");
+        fs.createArchive("root/f", "hello");
+        fs.close();
+
+        assertEquals("hello\n", read(new FileSystem(new FileChannelBlockDevice(volume, 1024)), "root/f.txt"));
+    }
+
+    @Test
+    void replayKeepsReusedBlock() throws Exception {
+        String volume = dir.resolve("queda.dat").toString();
+        FileSystem fs = fullVolume(volume);
+        fs.mkdir("root/x");
+        fs.commit();
+        fs.unlink("root/x");
+        fs.commit();
+        fs.createArchive("root/f", "hello");
+        fs.commit();
+        //sem close: a proxima montagem refaz as transacoes do journal, como depois de uma queda
+
+        assertEquals("hello\n", read(new FileSystem(new FileChannelBlockDevice(volume, 1024)), "root/f.txt"));
+    }
+
+    @Test
+    void batchGroupsFitInJournal() throws Exception {
+        FileSystem fs = new FileSystem(new FileChannelBlockDevice(dir.resolve("batch.dat").toString(), 1024));
+        fs.init(1024, 60000);
+        //1000 arquivos de 20 blocos: muito mais que o journal em um grupo de --commit-every=1000
+        StringBuilder script = new StringBuilder();
+        String content = "a".repeat(20000);
+        for (int i = 0; i < 1000; i++) {
+            script.append("create root/f").append(i).append(' ').append(content).append('\n');
+        }
+        int status = new BatchRunner(fs, 1000, 60_000).run(new BufferedReader(new StringReader(script.toString())),
+                new PrintStream(new ByteArrayOutputStream()));
+
+        assertEquals(0, status);
+        assertFalse(fs.cacheStats().contains("sem atomicidade"), fs.cacheStats());
+        fs.close();
+    }
+
+    //volume de 128 blocos cheio de arquivos, menos um bloco livre
+    private static FileSystem fullVolume(String volume) throws IOException, FileSystemException {
+        FileSystem fs = new FileSystem(new FileChannelBlockDevice(volume, 1024));
+        fs.init(1024, 128);
+        int files = 0;
+        try {
+            while (true) {
+                fs.createArchive("root/cheio" + files, "x");
+                files++;
+            }
+        } catch (FileSystemException cheio) {
+            fs.unlink("root/cheio" + (files - 1) + ".txt");
+        }
+        fs.commit();
+        return fs;
+    }
+
+    private static String read(FileSystem fs, String path) throws IOException, FileSystemException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fs.readArchive(path, out);
+        fs.close();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
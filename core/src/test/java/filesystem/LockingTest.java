@@ -0,0 +1,145 @@
+package filesystem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//operacoes que travam mais de uma entrada nunca esperam por uma trava que a propria thread segura,
+//e um unlink -r so espera por quem esta usando a arvore que ele exclui
+class LockingTest {
+    private static final Duration LIMITE = Duration.ofSeconds(10);
+
+    @TempDir
+    Path dir;
+
+    private FileSystem fs;
+    private ExecutorService outra;
+
+    @BeforeEach
+    void volume() throws Exception {
+        fs = new FileSystem(new FileChannelBlockDevice(dir.resolve("travas.dat").toString(), 1024));
+        fs.init(1024, 1024);
+        fs.createArchive("root/f", "fora");
+        fs.mkdir("root/d");
+        fs.mkdir("root/d/e");
+        fs.createArchive("root/d/a", "dentro");
+        fs.createArchive("root/d/e/b", "mais fundo");
+        outra = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void fecha() throws Exception {
+        outra.shutdownNow();
+        fs.close();
+    }
+
+    @Test
+    void initWithOwnOpenFileFailsFast() throws Exception {
+        assertTimeoutPreemptively(LIMITE, () -> {
+            try (FileHandle handle = fs.open("root/f.txt", false)) {
+                assertThrows(FileSystemException.class, () -> fs.init());
+                assertEquals(4, handle.size());
+            }
+            //sem o handle, o init formata
+            fs.init();
+        });
+        assertTrue(fs.ls("root").isEmpty());
+    }
+
+    @Test
+    void unlinkRecursiveWithAnotherFileOpen() throws Exception {
+        assertTimeoutPreemptively(LIMITE, () -> {
+            try (FileHandle handle = fs.open("root/f.txt", false)) {
+                fs.unlinkRecursive("root/d");
+                assertEquals(4, handle.size());
+            }
+        });
+        assertFalse(fs.ls("root").contains("d"));
+    }
+
+    @Test
+    void unlinkRecursiveOfOwnOpenFileFailsFast() throws Exception {
+        assertTimeoutPreemptively(LIMITE, () -> {
+            try (FileHandle handle = fs.open("root/d/e/b.txt", false)) {
+                assertThrows(FileSystemException.class, () -> fs.unlinkRecursive("root/d"));
+                assertEquals(10, handle.size());
+            }
+        });
+        assertTrue(fs.ls("root").contains("d"));
+    }
+
+    @Test
+    void unlinkRecursiveWaitsOnlyForItsTree() throws Exception {
+        CountDownLatch aberto = new CountDownLatch(1);
+        CountDownLatch fechar = new CountDownLatch(1);
+        Future<?> leitor = outra.submit(() -> {
+            try (FileHandle handle = fs.open("root/d/e/b.txt", false)) {
+                aberto.countDown();
+                fechar.await();
+            }
+            return null;
+        });
+        assertTrue(aberto.await(10, TimeUnit.SECONDS));
+
+        ExecutorService exclusao = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> unlink = exclusao.submit(() -> fs.unlinkRecursive("root/d"));
+            //o arquivo aberto segura o unlink -r, mas nao o resto do volume
+            assertTimeoutPreemptively(LIMITE, () -> {
+                fs.createArchive("root/g", "livre");
+                fs.writeArchive("root/f.txt", "escrito");
+            });
+            assertFalse(unlink.isDone());
+
+            fechar.countDown();
+            leitor.get(10, TimeUnit.SECONDS);
+            assertEquals("Diretório/Arquivo removido com sucesso", unlink.get(10, TimeUnit.SECONDS));
+        } finally {
+            exclusao.shutdownNow();
+        }
+        assertFalse(fs.ls("root").contains("d"));
+        assertThrows(FileSystemException.class, () -> fs.open("root/d/e/b.txt", false));
+    }
+
+    @Test
+    void walkLetsWritersIntoTheWalkedDirectory() throws Exception {
+        AtomicBoolean criado = new AtomicBoolean();
+        TreeVisitor visitor = new TreeVisitor() {
+            @Override
+            public void directory(String path, List<String> names, List<DirEntry> entries) {
+                if (!path.equals("root/d")) return;
+                //a caminhada ainda nao terminou: um mkdir no diretorio de cima nao pode ficar esperando por ela
+                Future<?> mkdir = outra.submit(() -> {
+                    fs.mkdir("root/d/novo");
+                    return null;
+                });
+                try {
+                    mkdir.get(10, TimeUnit.SECONDS);
+                    criado.set(true);
+                } catch (Exception e) {
+                    mkdir.cancel(true);
+                }
+            }
+        };
+        long bytes = assertTimeoutPreemptively(LIMITE.multipliedBy(2), () -> fs.walk("root/d", visitor));
+        assertTrue(criado.get());
+        assertEquals(16, bytes);
+    }
+}